@@ -0,0 +1,174 @@
+package common.output;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Asynchronous output of the labs, shared by all of them: the actors hand it preformatted records through a bounded
+ * queue and never block on the console, while a background thread writes the records in batches to stdout or to a file.
+ * <p>
+ * The records below the verbosity level are dropped: check {@link #enabled(Level)} before building an expensive record.
+ * When the writer cannot keep up and the queue is full, the new records are dropped too, and their number is written
+ * with the next batch, so the memory stays bounded and the actors are never slowed down by the console.
+ * The verbosity and the destination are read from the system properties when the class is loaded:
+ * <ul>
+ * <li>output.level: off (nothing, e.g. for benchmarks), info (summaries) or debug (also each message, the default)</li>
+ * <li>output.file: file to write to (overwritten), stdout if not set</li>
+ * <li>output.capacity: maximum number of records queued and not written yet (65536 by default)</li>
+ * </ul>
+ * The records still queued are written when the JVM exits, or when {@link #flush()} returns.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public final class Output {
+
+	/**
+	 * Verbosity levels, from the least verbose.
+	 */
+	public enum Level {
+		OFF,
+		INFO,
+		DEBUG
+	}
+
+	// maximum number of records written at once
+	private static final int BATCH = 1024;
+
+	private static final Output SINK = new Output(
+		Level.valueOf(System.getProperty("output.level", "debug").toUpperCase(Locale.ROOT)),
+		System.getProperty("output.file"),
+		Integer.getInteger("output.capacity", 1 << 16)
+	);
+
+	private final Level level;
+	private final String file;
+	private final BlockingQueue<String> queue;
+	private final Thread writer;
+
+	// records queued & records written & records dropped because the queue was full
+	private final AtomicLong queued = new AtomicLong();
+	private long written = 0;
+	private final LongAdder dropped = new LongAdder();
+
+	// signalled by the writer when it wrote a batch, or when it cannot write anymore (guards written)
+	private final Lock lock = new ReentrantLock();
+	private final Condition drained = lock.newCondition();
+	private volatile boolean failed;
+
+	private Output(Level level, String file, int capacity) {
+		this.level = level;
+		this.file = file;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		if (level == Level.OFF) {
+			this.writer = null;
+			return;
+		}
+		this.writer = new Thread(this::write, "output-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(Output::flush, "output-flush"));
+	}
+
+	/**
+	 * Check if the records of a level are written.
+	 *
+	 * @param level Level of the records.
+	 * @return True if written, false if they would be dropped.
+	 */
+	public static boolean enabled(Level level) {
+		return level != Level.OFF && level.compareTo(SINK.level) <= 0;
+	}
+
+	/**
+	 * Write a record (a line) asynchronously, if its level is enabled.
+	 * The record is dropped (and counted) if the queue is full: the caller never blocks.
+	 *
+	 * @param level  Level of the record.
+	 * @param record Preformatted record, without the final newline.
+	 */
+	public static void print(Level level, String record) {
+		if (enabled(level) && !SINK.failed) {
+			if (SINK.queue.offer(record)) {
+				SINK.queued.incrementAndGet();
+			} else {
+				SINK.dropped.increment();
+			}
+		}
+	}
+
+	/**
+	 * Wait until all the records printed so far are written.
+	 */
+	public static void flush() {
+		if (SINK.writer == null) {
+			return;
+		}
+		final long target = SINK.queued.get();
+		SINK.lock.lock();
+		try {
+			while (SINK.written < target && !SINK.failed) {
+				SINK.drained.awaitUninterruptibly();
+			}
+		} finally {
+			SINK.lock.unlock();
+		}
+	}
+
+	// background writer: wait for a record, then write it with the ones queued after it in a single batch
+	private void write() {
+		final List<String> batch = new ArrayList<>(BATCH);
+		try (Writer out = open()) {
+			while (true) {
+				batch.add(queue.take());
+				queue.drainTo(batch, BATCH - 1);
+				for (String record : batch) {
+					out.write(record);
+					out.write('\n');
+				}
+				final long lost = dropped.sumThenReset();
+				if (lost > 0) {
+					out.write("[output] " + lost + " records dropped, the queue was full\n");
+				}
+				out.flush();
+				written(batch.size());
+				batch.clear();
+			}
+		} catch (IOException | InterruptedException e) {
+			failed = true;
+			queue.clear();
+			written(0);
+			System.err.println("Output disabled, cannot write to " + (file != null ? file : "stdout") + ": " + e);
+		}
+	}
+
+	// count the records written, and wake up the threads waiting in flush()
+	private void written(long count) {
+		lock.lock();
+		try {
+			written += count;
+			drained.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private Writer open() throws IOException {
+		final OutputStream stream = file != null
+			? Files.newOutputStream(Paths.get(file))
+			: new FileOutputStream(FileDescriptor.out);
+		return new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 1 << 16);
+	}
+
+}
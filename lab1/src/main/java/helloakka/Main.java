@@ -3,26 +3,51 @@ package helloakka;
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.actor.Props;
+import common.output.Output;
+import helloakka.actors.FlowStats;
 import helloakka.actors.Receiver;
 import helloakka.actors.Sender;
+import scala.concurrent.duration.Duration;
+
+import java.util.concurrent.TimeUnit;
 
 public class Main {
 
 	// constants
 	private final static int N_SENDERS = 5;
 
+	// high-rate mode: the senders send as fast as the receiver grants credits (credit-based flow control)
+	private final static boolean HIGH_RATE = false;
+	public final static int CREDITS = 64;          // initial credits of each sender: its messages waiting in the receiver's mailbox
+	public final static int CREDIT_BATCH = 16;     // the receiver gives the credits back in batches (at most CREDITS)
+
 	// entry point
 	public static void main(String[] args) {
+		if (HIGH_RATE) {
+			checkCredits();
+		}
 
 		// Create the 'helloakka' actor system
 		final ActorSystem system = ActorSystem.create("helloakka");
 
+		// counters of the high-rate mode
+		final FlowStats stats = new FlowStats();
+
 		// Create a single receiver actor
-		final ActorRef receiver = system.actorOf(Props.create(Receiver.class), "receiver");
+		final ActorRef receiver = system.actorOf(
+			HIGH_RATE ? Props.create(Receiver.class, CREDIT_BATCH, stats) : Props.create(Receiver.class),
+			"receiver"
+		);
 
 		// Create multiple sender actors
 		for (int i = 0; i < N_SENDERS; i++) {
 
+			// high-rate mode: the senders start with their initial credits
+			if (HIGH_RATE) {
+				system.actorOf(Props.create(Sender.class, receiver, CREDITS, stats), "sender" + i);
+				continue;
+			}
+
 			// create the actor system
 			system.actorOf(
 
@@ -34,5 +59,27 @@ public class Main {
 				"sender" + i
 			);
 		}
+
+		// high-rate mode: print the throughput and the size of the receiver's mailbox every second
+		if (HIGH_RATE) {
+			final long[] last = {0};
+			system.scheduler().schedule(
+				Duration.create(1, TimeUnit.SECONDS),
+				Duration.create(1, TimeUnit.SECONDS),
+				() -> {
+					final long received = stats.received();
+					Output.print(Output.Level.INFO, "[receiver] " + (received - last[0]) + " messages/s, mailbox " + stats.mailbox());
+					last[0] = received;
+				},
+				system.dispatcher()
+			);
+		}
+	}
+
+	// the receiver gives the credits back after CREDIT_BATCH messages of a sender: with more than CREDITS, the sender stalls
+	static void checkCredits() {
+		if (CREDIT_BATCH < 1 || CREDIT_BATCH > CREDITS) {
+			throw new IllegalArgumentException("CREDIT_BATCH must be between 1 and CREDITS (" + CREDITS + "): " + CREDIT_BATCH);
+		}
 	}
 }
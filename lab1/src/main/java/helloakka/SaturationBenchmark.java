@@ -0,0 +1,73 @@
+package helloakka;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import helloakka.actors.FlowStats;
+import helloakka.actors.Receiver;
+import helloakka.actors.Sender;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Saturate the receiver with the high-rate senders (credit-based flow control), doubling the number of senders:
+// for each step, print the messages processed per second and the size of the receiver's mailbox over time,
+// which the credits keep below N_SENDERS * CREDITS.
+// Usage: SaturationBenchmark [maximum number of senders, default 64] [seconds of each step, default 3]
+public class SaturationBenchmark {
+
+	// constants
+	private final static int WARM_UP_MS = 1000;    // time before measuring each step
+	private final static int SAMPLE_MS = 250;      // time between two samples of the mailbox
+
+	// entry point
+	public static void main(String[] args) throws Exception {
+		final int maxSenders = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+		final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		Main.checkCredits();
+
+		System.out.println(String.format("%7s %12s %11s %7s  %s", "senders", "messages/s", "max mailbox", "bound", "mailbox every " + SAMPLE_MS + " ms"));
+		long best = 0;
+		int bestSenders = 0;
+		for (int senders = 1; senders <= maxSenders; senders *= 2) {
+
+			// a new system for each step
+			final ActorSystem system = ActorSystem.create("saturation");
+			final FlowStats stats = new FlowStats();
+			final ActorRef receiver = system.actorOf(Props.create(Receiver.class, Main.CREDIT_BATCH, stats), "receiver");
+			for (int i = 0; i < senders; i++) {
+				system.actorOf(Props.create(Sender.class, receiver, Main.CREDITS, stats), "sender" + i);
+			}
+
+			// warm up, then count the processed messages & sample the mailbox
+			Thread.sleep(WARM_UP_MS);
+			final List<Long> mailbox = new ArrayList<>();
+			final long from = stats.received();
+			final long start = System.nanoTime();
+			for (int t = 0; t < seconds * 1000; t += SAMPLE_MS) {
+				Thread.sleep(SAMPLE_MS);
+				mailbox.add(stats.mailbox());
+			}
+			final long throughput = (stats.received() - from) * TimeUnit.SECONDS.toNanos(1) / (System.nanoTime() - start);
+			system.terminate();
+			Await.ready(system.whenTerminated(), Duration.create(1, TimeUnit.MINUTES));
+
+			System.out.println(String.format(
+				"%7d %12d %11d %7d  %s",
+				senders,
+				throughput,
+				mailbox.stream().mapToLong(Long::longValue).max().orElse(0),
+				(long) senders * Main.CREDITS,
+				mailbox
+			));
+			if (throughput > best) {
+				best = throughput;
+				bestSenders = senders;
+			}
+		}
+		System.out.println("maximum sustainable throughput: " + best + " messages/s with " + bestSenders + " sender(s)");
+	}
+}
@@ -0,0 +1,28 @@
+package helloakka.actors;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters shared by the senders and the receiver in high-rate mode, read by whoever wants to measure them
+public class FlowStats {
+	private final LongAdder sent = new LongAdder();        // messages sent by all the senders
+	private final LongAdder received = new LongAdder();    // messages processed by the receiver
+
+	void onSent() {
+		sent.increment();
+	}
+
+	void onReceived() {
+		received.increment();
+	}
+
+	// total number of messages processed by the receiver
+	public long received() {
+		return received.sum();
+	}
+
+	// number of messages sent but not processed yet: the size of the mailbox of the receiver
+	public long mailbox() {
+		final long processed = received.sum();    // read first: every message processed was already counted as sent
+		return sent.sum() - processed;
+	}
+}
@@ -1,15 +1,40 @@
 package helloakka.actors;
 
+import akka.actor.ActorRef;
 import akka.actor.UntypedActor;
+import common.output.Output;
+import helloakka.messagges.CreditMessage;
 import helloakka.messagges.HelloMessage;
 
+import java.util.HashMap;
+import java.util.Map;
+
 // The Receiver actor class
 public class Receiver extends UntypedActor {
+	private final int creditBatch;                                // high-rate mode: credits returned at once (0 otherwise)
+	private final FlowStats stats;                                // counters of the high-rate mode
+	private final Map<ActorRef, Integer> processed = new HashMap<>();    // messages processed since the last credits, by sender
+
+	public Receiver() {
+		this.creditBatch = 0;
+		this.stats = null;
+	}
+
+	// high-rate mode: do not print the messages, give the credits back to the senders every creditBatch messages
+	public Receiver(int creditBatch, FlowStats stats) {
+		this.creditBatch = creditBatch;
+		this.stats = stats;
+	}
 
 	public void onReceive(Object message) {        // This function is called on every message received by the actor.
-		if (message instanceof HelloMessage) {            // Like this you can distinguish the types of received messages
+		if (message instanceof HelloMessage && creditBatch > 0) {
+			grantCredits();
+		} else if (message instanceof HelloMessage) {            // Like this you can distinguish the types of received messages
+			if (!Output.enabled(Output.Level.DEBUG)) {            // do not even build the line if nobody will read it
+				return;
+			}
 			HelloMessage h = (HelloMessage) message;
-			System.out.println("[" +
+			Output.print(Output.Level.DEBUG, "[" +
 				getSelf().path().name() +    // the name of the current actor
 				"] received a message from " +
 				getSender().path().name() + // the name of the sender actor
@@ -19,4 +44,14 @@ public class Receiver extends UntypedActor {
 			unhandled(message);                // for messages we don't know what to do with
 		}
 	}
+
+	// the message left my mailbox: the sender can send another one (in batches, to send fewer credit messages)
+	private void grantCredits() {
+		stats.onReceived();
+		final int count = processed.merge(getSender(), 1, Integer::sum);
+		if (count == creditBatch) {
+			processed.put(getSender(), 0);
+			getSender().tell(new CreditMessage(creditBatch), getSelf());
+		}
+	}
 }
@@ -3,6 +3,7 @@ package helloakka.actors;
 import akka.actor.ActorRef;
 import akka.actor.Cancellable;
 import akka.actor.UntypedActor;
+import helloakka.messagges.CreditMessage;
 import helloakka.messagges.HelloMessage;
 import scala.concurrent.duration.Duration;
 
@@ -11,12 +12,31 @@ import java.util.concurrent.TimeUnit;
 // The Sender actor class
 public class Sender extends UntypedActor {
 	private ActorRef receiver;
+	private final boolean highRate;    // send as fast as the receiver allows instead of once per second
+	private final FlowStats stats;     // counters of the high-rate mode
+	private int credits;               // messages I may still send in high-rate mode
 
 	public Sender(ActorRef receiver) {
 		this.receiver = receiver;    // this actor will be the destination of our messages
+		this.highRate = false;
+		this.stats = null;
+	}
+
+	// high-rate mode: send a message for each credit, starting with the given credits
+	public Sender(ActorRef receiver, int credits, FlowStats stats) {
+		this.receiver = receiver;
+		this.highRate = true;
+		this.stats = stats;
+		this.credits = credits;
 	}
 
 	public void preStart() {
+		// high-rate mode: use the initial credits, then wait for the receiver to grant more
+		if (highRate) {
+			sendWithCredits();
+			return;
+		}
+
 		// Create a timer that will periodically send a message to the receiver actor
 		Cancellable timer = getContext().system().scheduler().schedule(
 			Duration.create(1, TimeUnit.SECONDS),                // when to start generating messages
@@ -28,6 +48,21 @@ public class Sender extends UntypedActor {
 	}
 
 	public void onReceive(Object message) {
-		unhandled(message);        // this actor does not handle any incoming messages
+		if (message instanceof CreditMessage && highRate) {        // the receiver processed some of my messages
+			credits += ((CreditMessage) message).credits;
+			sendWithCredits();
+		} else {
+			unhandled(message);        // this actor does not handle any other incoming messages
+		}
+	}
+
+	// send as many messages as my credits: the mailbox of the receiver never holds more than them
+	private void sendWithCredits() {
+		final HelloMessage hello = new HelloMessage("HelloMessage from " + getSelf().path().name());
+		while (credits > 0) {
+			stats.onSent();    // before telling: the receiver may process the message right away
+			receiver.tell(hello, getSelf());
+			credits--;
+		}
 	}
 }
@@ -0,0 +1,12 @@
+package helloakka.messagges;
+
+import java.io.Serializable;
+
+// Credit Message: the receiver allows the sender to send more messages
+public class CreditMessage implements Serializable {
+	public final int credits;    // number of messages the sender may send
+
+	public CreditMessage(int credits) {
+		this.credits = credits;
+	}
+}
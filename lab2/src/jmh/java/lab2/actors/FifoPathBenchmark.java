@@ -0,0 +1,63 @@
+package lab2.actors;
+
+import lab2.messages.ChatMessage;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole path of a message with FIFO delivery: the sender numbers it, the receiver adds it to the reorder window
+ * of the sender and extracts the messages ready to be delivered. The senders take turns, and the two messages
+ * of each pair of the same sender arrive swapped, so half of the messages wait in the window.
+ * <p>
+ * It measures the same path and the same group sizes as lab3's MessagePathBenchmark (causal delivery with vector clocks,
+ * n entries in each clock): to compare the cost of the two orderings (ns and bytes per message), run both on the same machine
+ * one after the other, with the same options: gradle jmh -PjmhArgs='FifoPathBenchmark -prof gc' here,
+ * then gradle jmh -PjmhArgs='MessagePathBenchmark -prof gc' in lab3.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FifoPathBenchmark {
+
+	// number of members of the group
+	@Param({"10", "100", "1000"})
+	public int n;
+
+	private FifoBuffer receiver;
+	private int[] sent;
+	private ChatMessage[] swapped;
+	private int sender;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		receiver = new FifoBuffer(16);
+		sent = new int[n];
+		swapped = new ChatMessage[n];
+		sender = 0;
+	}
+
+	@Benchmark
+	public void deliver(Blackhole blackhole) {
+		final int from = sender;
+		sender = (sender + 1) % n;
+		final ChatMessage message = new ChatMessage("a", 1, from, sent[from]++);
+
+		// the first message of a pair arrives after the second one
+		if ((message.seq() & 1) == 0) {
+			swapped[from] = message;
+			return;
+		}
+		receiver.add(message);
+		receiver.add(swapped[from]);
+		ChatMessage delivered;
+		while ((delivered = receiver.poll()) != null) {
+			blackhole.consume(delivered);
+		}
+	}
+
+}
@@ -3,13 +3,20 @@ package lab2;
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.actor.Props;
+import common.output.Output;
 import lab2.actors.Chatter;
+import lab2.actors.DeliveryStats;
+import lab2.actors.TerminationDetector;
 import lab2.messages.StartMessage;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+// Usage: Main [fifo|arrival, default FIFO] [maximum delay in ms, default MAX_DELAY_MS] [% of late messages, default LATE_PERCENT]
+// a chatter sends a message only after a reply, so the messages of a sender overtake each other only if some are late:
+// the reorder windows of the FIFO mode hold the next ones back, while in arrival order they are delivered out of order
+// (the summary printed at the end counts both), e.g. Main fifo 20 10
 public class Main {
 
 	// system constants
@@ -17,30 +24,49 @@ public class Main {
 	public final static int N_MESSAGES = 5;          // number of chat messages to send (per chatter)
 	private final static int N_LISTENERS = 10;        // number of listening actors
 
+	// delivery constants (defaults of the arguments)
+	public final static boolean FIFO = false;        // deliver the messages of each sender in the order they were sent
+	public final static int FIFO_WINDOW = 16;        // initial size of the reorder window of each sender (a power of 2)
+	public final static int MAX_DELAY_MS = 0;        // maximum random delay of each message (0 to send it immediately)
+	public final static int LATE_PERCENT = 100;      // percentage of the messages delayed, the others are sent immediately
+
+	// termination constants
+	public final static int WAVE_INTERVAL_MS = 5;    // time between two waves of probes of the termination detector
+
 	// entry point
 	public static void main(String[] args) {
+		final boolean fifo = args.length > 0 ? "fifo".equals(args[0]) : FIFO;
+		final int maxDelayMs = args.length > 1 ? Integer.parseInt(args[1]) : MAX_DELAY_MS;
+		final int latePercent = args.length > 2 ? Integer.parseInt(args[2]) : LATE_PERCENT;
 
 		// Create the 'lab2' actor system
 		final ActorSystem system = ActorSystem.create("lab2");
 
+		// counters of the deliveries, printed when the chat ended
+		final DeliveryStats stats = new DeliveryStats();
+		system.registerOnTermination(() -> Output.print(
+			Output.Level.INFO,
+			(fifo ? "FIFO" : "arrival order") + ", " + latePercent + "% of the messages late by up to " + maxDelayMs + " ms: " + stats
+		));
+
 		List<ActorRef> group = new ArrayList<>();
 
 		// the first four peers will be talkative chatters
 
 		// this one will start the "discussion" on topic "a"
-		group.add(system.actorOf(Props.create(Chatter.class, 0, "a", true), "chatter_0"));
+		group.add(system.actorOf(Props.create(Chatter.class, 0, "a", true, fifo, maxDelayMs, latePercent, stats), "chatter_0"));
 
 		// this one will catch up the topic "a"
-		group.add(system.actorOf(Props.create(Chatter.class, 1, "a", false), "chatter_1"));
+		group.add(system.actorOf(Props.create(Chatter.class, 1, "a", false, fifo, maxDelayMs, latePercent, stats), "chatter_1"));
 
 		// add two more chatters that should talk on another topic
 		// Important: use IDs 2 and 3 for them
-		group.add(system.actorOf(Props.create(Chatter.class, 2, "b", true), "chatter_2"));
-		group.add(system.actorOf(Props.create(Chatter.class, 3, "b", false), "chatter_3"));
+		group.add(system.actorOf(Props.create(Chatter.class, 2, "b", true, fifo, maxDelayMs, latePercent, stats), "chatter_2"));
+		group.add(system.actorOf(Props.create(Chatter.class, 3, "b", false, fifo, maxDelayMs, latePercent, stats), "chatter_3"));
 
 		// the rest are silent listeners: they don't have topics to discuss
 		for (int i = 0; i < N_LISTENERS; i++) {
-			group.add(system.actorOf(Props.create(Chatter.class, i + N_CHATTERS, null, false), "listener" + i));
+			group.add(system.actorOf(Props.create(Chatter.class, i + N_CHATTERS, null, false, fifo, maxDelayMs, latePercent, stats), "listener" + i));
 		}
 
 		// "forgetting" the reference to the group ensuring that no one can modify the group
@@ -51,6 +77,9 @@ public class Main {
 		for (ActorRef peer : group) {
 			peer.tell(start, null);
 		}
+
+		// the detector terminates the system when the chat ends (everybody gets the start message before the first probe)
+		system.actorOf(Props.create(TerminationDetector.class, group), "termination");
 	}
 
 }
@@ -2,13 +2,21 @@ package lab2.actors;
 
 import akka.actor.ActorRef;
 import akka.actor.UntypedActor;
+import common.output.Output;
 import lab2.Main;
 import lab2.messages.ChatMessage;
+import lab2.messages.ProbeMessage;
+import lab2.messages.ProbeReplyMessage;
 import lab2.messages.StartMessage;
+import scala.concurrent.duration.Duration;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 public class Chatter extends UntypedActor {
 
@@ -16,18 +24,31 @@ public class Chatter extends UntypedActor {
 	private final int id;                   // My ID number
 	private final String myTopic;           // The topic I am interested in, null if no topic
 	private final boolean initiator;        // Should I start the conversation?
+	private final FifoBuffer fifo;          // FIFO delivery for each sender, null to deliver in arrival order
+	private final int maxDelayMs;           // maximum random delay of each message sent (0 to send it immediately)
+	private final int latePercent;          // percentage of the messages delayed, the others are sent immediately
+	private final DeliveryStats stats;      // where to add my counters when I stop
 
 	// internal state
 	private List<ActorRef> group;                            // the list of peers (the multicast group)
-	private StringBuffer chatHistory = new StringBuffer();    // all the chat messages received are stored here
-	private int recvCount = 0;    // number of received messages
+	private StringBuilder chatHistory = new StringBuilder();  // all the chat messages received are stored here (if printed)
+	private int recvCount = 0;    // number of received messages (also the ones not delivered yet)
 	private int sendCount = 0;    // number of sent messages
+	private int tellCount = 0;    // number of messages sent to the peers (one per peer for each multicast)
+	private int deliverCount = 0;                             // number of delivered messages
+	private int outOfOrder = 0;                               // delivered before a previous message of their sender
+	private final Map<Integer, Integer> lastSeq = new HashMap<>();    // sender -> highest sequence number delivered
+	private long lastDelivery = 0;                            // System.nanoTime() of the last delivery
 
 	// constructor
-	public Chatter(int id, String topic, boolean initiator) {
+	public Chatter(int id, String topic, boolean initiator, boolean fifo, int maxDelayMs, int latePercent, DeliveryStats stats) {
 		this.id = id;
 		this.myTopic = topic;
 		this.initiator = initiator;
+		this.fifo = fifo ? new FifoBuffer(Main.FIFO_WINDOW, true) : null;
+		this.maxDelayMs = maxDelayMs;
+		this.latePercent = latePercent;
+		this.stats = stats;
 	}
 
 	@Override
@@ -37,18 +58,34 @@ public class Chatter extends UntypedActor {
 		if (msg instanceof StartMessage) {
 			setGroup((StartMessage) msg);
 
-			System.out.println(getSelf().path().name() + ": starting with total " + this.group.size() + " peer(s)");
+			Output.print(Output.Level.DEBUG, getSelf().path().name() + ": starting with total " + this.group.size() + " peer(s)");
 
 			// initiator starts the conversation on his topic
 			if (initiator) {
+				stats.onStart(System.nanoTime());
 				sendChatMessage(myTopic, 0);        // with a message 0
 			}
 		}
 
 		// received a chat message
 		else if (msg instanceof ChatMessage) {
-			// deliver the message
-			deliver((ChatMessage) msg);
+			recvCount++;
+
+			// deliver the message, after the previous ones of its sender in FIFO mode
+			if (fifo == null) {
+				deliver((ChatMessage) msg);
+			} else {
+				fifo.add((ChatMessage) msg);
+				ChatMessage next;
+				while ((next = fifo.poll()) != null) {
+					deliver(next);
+				}
+			}
+		}
+
+		// the termination detector asks for my counters
+		else if (msg instanceof ProbeMessage) {
+			getSender().tell(new ProbeReplyMessage(((ProbeMessage) msg).wave(), tellCount, recvCount), getSelf());
 		}
 
 		// unknown message
@@ -57,18 +94,36 @@ public class Chatter extends UntypedActor {
 		}
 	}
 
+	// print the chat history in the end, when the detector terminates the system, and add my counters to the stats
+	@Override
+	public void postStop() {
+		Output.print(Output.Level.INFO, getSelf().path().name() + ": " + chatHistory);
+		stats.add(deliverCount, outOfOrder, lastDelivery);
+		if (fifo != null) {
+			stats.addWaits(fifo);
+		}
+	}
+
 	private void setGroup(StartMessage sm) {
 		this.group = new ArrayList<>(sm.getGroup());
 	}
 
 	private void deliver(ChatMessage m) {
 
-		// Our "chat application" appends all the received messages to the chatHistory
+		// count the messages delivered before a previous one of their sender (never in FIFO mode)
+		deliverCount++;
+		lastDelivery = System.nanoTime();
+		if (m.seq() < lastSeq.merge(m.senderId(), m.seq(), Math::max)) {
+			outOfOrder++;
+		}
+
+		// Our "chat application" appends all the received messages to the chatHistory (only if it will be printed)
 		// and replies if the topic of the message is interesting
-		chatHistory.append(m.topic());
-		chatHistory.append(m.n());
-		chatHistory.append(" ");
-		recvCount++;
+		if (Output.enabled(Output.Level.INFO)) {
+			chatHistory.append(m.topic());
+			chatHistory.append(m.n());
+			chatHistory.append(" ");
+		}
 
 		// I have a topic to discuss and the message is on this topic
 		// I still have something to tell
@@ -78,23 +133,32 @@ public class Chatter extends UntypedActor {
 			// reply to the received message with an incremented value and the same topic
 			sendChatMessage(m.topic(), m.n() + 1);
 		}
-
-		// print the chat history in the end
-		if (recvCount == Main.N_MESSAGES * Main.N_CHATTERS) {
-			System.out.println(getSelf().path().name() + ": " + chatHistory);
-		}
 	}
 
 	private void sendChatMessage(String topic, int n) {
+		multicast(new ChatMessage(topic, n, id, sendCount));
 		sendCount++;
-		multicast(new ChatMessage(topic, n, id));
 	}
 
 	// implement the multicast (just send m to everybody in the group using the tell() function)
+	// some messages are delayed by a random time, so the messages of the same sender may arrive in a different order
 	private void multicast(Serializable message) {
 		assert group != null;
 		group.stream()
 			.unordered()
-			.forEach(actor -> actor.tell(message, getSelf()));
+			.forEach(actor -> {
+				tellCount++;
+				if (maxDelayMs == 0 || ThreadLocalRandom.current().nextInt(100) >= latePercent) {
+					actor.tell(message, getSelf());
+				} else {
+					getContext().system().scheduler().scheduleOnce(
+						Duration.create(ThreadLocalRandom.current().nextInt(maxDelayMs), TimeUnit.MILLISECONDS),
+						actor,
+						message,
+						getContext().dispatcher(),
+						getSelf()
+					);
+				}
+			});
 	}
 }
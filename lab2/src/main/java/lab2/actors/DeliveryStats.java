@@ -0,0 +1,51 @@
+package lab2.actors;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters of the deliveries of all the chatters, added by each chatter when it stops and read once the chat ended
+public class DeliveryStats {
+	private final LongAdder delivered = new LongAdder();      // messages delivered by all the chatters
+	private final LongAdder outOfOrder = new LongAdder();     // delivered before a previous message of their sender
+	private final LongAdder waited = new LongAdder();         // FIFO: delivered after waiting in a reorder window
+	private final LongAdder waitNanos = new LongAdder();      // FIFO: total time spent in the reorder windows
+	private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+	private final AtomicLong start = new AtomicLong();        // System.nanoTime() of the first message sent
+	private final LongAccumulator last = new LongAccumulator(Math::max, 0);    // System.nanoTime() of the last delivery
+
+	// the first message of the chat is being sent
+	void onStart(long now) {
+		start.compareAndSet(0, now);
+	}
+
+	// the counters of a chatter, when it stops
+	void add(int delivered, int outOfOrder, long lastDelivery) {
+		this.delivered.add(delivered);
+		this.outOfOrder.add(outOfOrder);
+		this.last.accumulate(lastDelivery);
+	}
+
+	// the waits measured by the FIFO buffer of a chatter, when it stops
+	void addWaits(FifoBuffer fifo) {
+		waited.add(fifo.waited());
+		waitNanos.add(fifo.waitNanos());
+		maxWaitNanos.accumulate(fifo.maxWaitNanos());
+	}
+
+	// one-line summary of the chat
+	@Override
+	public String toString() {
+		final long n = waited.sum();
+		return String.format(
+			"%d messages delivered in %d ms, %d out of order, %d waited in the reorder windows (mean %.0f us, max %d us)",
+			delivered.sum(),
+			TimeUnit.NANOSECONDS.toMillis(Math.max(0, last.get() - start.get())),
+			outOfOrder.sum(),
+			n,
+			n > 0 ? waitNanos.sum() / 1e3 / n : 0.0,
+			TimeUnit.NANOSECONDS.toMicros(maxWaitNanos.get())
+		);
+	}
+}
@@ -0,0 +1,190 @@
+package lab2.actors;
+
+import lab2.messages.ChatMessage;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * FIFO delivery for each sender: the messages of a sender are delivered in the order in which they were sent
+ * (by their sequence number), the messages of different senders in any order.
+ * <p>
+ * The messages arrived too early wait in a reorder window of the sender: a ring buffer indexed by sequence number,
+ * which grows only if a message arrives more than its size ahead of the next one to deliver.
+ * Unlike a vector clock, each message carries a single number and the receiver checks only its sender's window.
+ * <p>
+ * If timed, the buffer also measures how long the messages arrived too early waited in the windows.
+ * <p>
+ * Usage: add a message, then poll the messages ready to be delivered until null.
+ */
+final class FifoBuffer {
+
+	// reorder window of each sender
+	private final Map<Integer, Window> windows = new HashMap<>();
+
+	// initial size of the windows (a power of 2)
+	private final int size;
+
+	// window of the last message added (only its sender may have messages to deliver)
+	private Window ready;
+
+	// number of messages waiting in the windows
+	private int held;
+
+	// measure the waits -> messages delivered after waiting in a window, total & longest wait (ns)
+	private final boolean timed;
+	private int waited;
+	private long waitNanos;
+	private long maxWaitNanos;
+
+	FifoBuffer(int size) {
+		this(size, false);
+	}
+
+	FifoBuffer(int size, boolean timed) {
+		if (size < 1 || Integer.bitCount(size) != 1) {
+			throw new IllegalArgumentException("The size of the window must be a power of 2: " + size);
+		}
+		this.size = size;
+		this.timed = timed;
+	}
+
+	/**
+	 * Add a message received: it is ignored if it is a duplicate.
+	 *
+	 * @param m Message.
+	 */
+	void add(ChatMessage m) {
+		Window window = windows.get(m.senderId());
+		if (window == null) {
+			window = new Window(size, timed);
+			windows.put(m.senderId(), window);
+		}
+		if (window.offer(m)) {
+			held++;
+		}
+		ready = window;
+	}
+
+	/**
+	 * Extract the next message to deliver.
+	 *
+	 * @return Next message of the sender of the last message added, null if it must wait.
+	 */
+	ChatMessage poll() {
+		final ChatMessage m = ready != null ? ready.poll() : null;
+		if (m != null) {
+			held--;
+			if (ready.arrived != 0) {
+				final long wait = System.nanoTime() - ready.arrived;
+				waited++;
+				waitNanos += wait;
+				maxWaitNanos = Math.max(maxWaitNanos, wait);
+			}
+		} else {
+			ready = null;
+		}
+		return m;
+	}
+
+	/**
+	 * Return the number of messages waiting for the previous ones of their sender.
+	 *
+	 * @return Messages not delivered yet.
+	 */
+	int size() {
+		return held;
+	}
+
+	/**
+	 * Return the number of messages delivered after waiting for a previous message of their sender (only if timed).
+	 *
+	 * @return Messages arrived too early.
+	 */
+	int waited() {
+		return waited;
+	}
+
+	/**
+	 * Return the total time spent in the windows by the messages arrived too early (only if timed).
+	 *
+	 * @return Nanoseconds.
+	 */
+	long waitNanos() {
+		return waitNanos;
+	}
+
+	/**
+	 * Return the longest time spent in a window by a message (only if timed).
+	 *
+	 * @return Nanoseconds.
+	 */
+	long maxWaitNanos() {
+		return maxWaitNanos;
+	}
+
+	// reorder window of a sender: ring[seq & mask] holds the message seq, for next <= seq < next + ring.length
+	// (if timed, since[seq & mask] is when the message arrived too early, 0 if it arrived in order)
+	private static final class Window {
+
+		private ChatMessage[] ring;
+		private long[] since;
+		private int next = 0;
+
+		// arrival of the last message polled, 0 if it did not wait
+		private long arrived;
+
+		private Window(int size, boolean timed) {
+			this.ring = new ChatMessage[size];
+			this.since = timed ? new long[size] : null;
+		}
+
+		// store a message, false if already delivered or stored
+		private boolean offer(ChatMessage m) {
+			if (m.seq() < next) {
+				return false;
+			}
+			while (m.seq() - next >= ring.length) {
+				grow();
+			}
+			final int slot = m.seq() & (ring.length - 1);
+			if (ring[slot] != null) {
+				return false;
+			}
+			ring[slot] = m;
+			if (since != null) {
+				since[slot] = m.seq() == next ? 0 : System.nanoTime();
+			}
+			return true;
+		}
+
+		// remove the next message, if arrived
+		private ChatMessage poll() {
+			final int slot = next & (ring.length - 1);
+			final ChatMessage m = ring[slot];
+			if (m != null) {
+				ring[slot] = null;
+				arrived = since != null ? since[slot] : 0;
+				next++;
+			}
+			return m;
+		}
+
+		// double the window, keeping the messages at their new positions
+		private void grow() {
+			final ChatMessage[] old = ring;
+			final long[] oldSince = since;
+			ring = new ChatMessage[old.length * 2];
+			since = oldSince != null ? new long[ring.length] : null;
+			for (int i = 0; i < old.length; i++) {
+				if (old[i] != null) {
+					ring[old[i].seq() & (ring.length - 1)] = old[i];
+					if (since != null) {
+						since[old[i].seq() & (ring.length - 1)] = oldSince[i];
+					}
+				}
+			}
+		}
+	}
+
+}
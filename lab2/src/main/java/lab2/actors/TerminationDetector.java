@@ -0,0 +1,105 @@
+package lab2.actors;
+
+import akka.actor.ActorRef;
+import akka.actor.UntypedActor;
+import common.output.Output;
+import lab2.Main;
+import lab2.messages.ProbeMessage;
+import lab2.messages.ProbeReplyMessage;
+import scala.concurrent.duration.Duration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detect the end of the chat (four counter method) and terminate the actor system.
+ * <p>
+ * The detector probes all the chatters in waves and sums the chat messages they sent and received.
+ * The chat ended when two consecutive waves find the same totals, with as many messages received as sent:
+ * no message was in transit at the end of the first wave, and nobody sent a message between the two waves.
+ */
+public class TerminationDetector extends UntypedActor {
+
+	// periodic message to myself
+	private static final String WAVE = "wave";
+
+	// detector properties
+	private final List<ActorRef> group;     // the chatters to probe
+
+	// internal state
+	private int wave = 0;                   // number of the current wave
+	private int replies;                    // replies to the current wave
+	private long sent;                      // totals of the current wave
+	private long received;
+	private long quietTotal = -1;           // total of the previous wave if nothing was in transit, otherwise -1
+
+	// constructor
+	public TerminationDetector(List<ActorRef> group) {
+		this.group = new ArrayList<>(group);
+	}
+
+	@Override
+	public void preStart() {
+		startWave();
+	}
+
+	@Override
+	public void onReceive(Object msg) {
+
+		// a chatter replied to the current wave
+		if (msg instanceof ProbeReplyMessage) {
+			final ProbeReplyMessage reply = (ProbeReplyMessage) msg;
+			if (reply.wave() == wave) {
+				replies++;
+				sent += reply.sent();
+				received += reply.received();
+				if (replies == group.size()) {
+					endWave();
+				}
+			}
+		}
+
+		// time for the next wave
+		else if (WAVE.equals(msg)) {
+			startWave();
+		}
+
+		// unknown message
+		else {
+			unhandled(msg);
+		}
+	}
+
+	private void startWave() {
+		wave++;
+		replies = 0;
+		sent = 0;
+		received = 0;
+		final ProbeMessage probe = new ProbeMessage(wave);
+		for (ActorRef peer : group) {
+			peer.tell(probe, getSelf());
+		}
+	}
+
+	private void endWave() {
+
+		// the same totals in two waves in a row, and nothing in transit -> the chat ended
+		final boolean quiet = sent == received;
+		if (quiet && sent == quietTotal) {
+			Output.print(Output.Level.INFO, "termination detected after " + wave + " waves (" + sent + " chat messages)");
+			getContext().system().terminate();
+			return;
+		}
+
+		// probe again later
+		quietTotal = quiet ? sent : -1;
+		getContext().system().scheduler().scheduleOnce(
+			Duration.create(Main.WAVE_INTERVAL_MS, TimeUnit.MILLISECONDS),
+			getSelf(),
+			WAVE,
+			getContext().dispatcher(),
+			getSelf()
+		);
+	}
+}
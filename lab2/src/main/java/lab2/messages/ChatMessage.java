@@ -11,11 +11,13 @@ public class ChatMessage implements Serializable {
 	private final String topic;         // "topic" of the conversation
 	private final int n;                // the number of the reply in the current topic
 	private final int senderId;         // my id
+	private final int seq;              // number of the message among the ones of its sender (from 0)
 
-	public ChatMessage(String topic, int n, int senderId) {
+	public ChatMessage(String topic, int n, int senderId, int seq) {
 		this.topic = topic;
 		this.n = n;
 		this.senderId = senderId;
+		this.seq = seq;
 	}
 
 	public String topic() {
@@ -29,4 +31,8 @@ public class ChatMessage implements Serializable {
 	public int senderId() {
 		return senderId;
 	}
+
+	public int seq() {
+		return seq;
+	}
 }
@@ -0,0 +1,19 @@
+package lab2.messages;
+
+import java.io.Serializable;
+
+/**
+ * Probe of the termination detector: the chatter replies with its counters.
+ */
+public class ProbeMessage implements Serializable {
+
+	private final int wave;        // number of the wave of probes
+
+	public ProbeMessage(int wave) {
+		this.wave = wave;
+	}
+
+	public int wave() {
+		return wave;
+	}
+}
@@ -0,0 +1,32 @@
+package lab2.messages;
+
+import java.io.Serializable;
+
+/**
+ * Reply to a probe: chat messages sent and received so far by a chatter.
+ */
+public class ProbeReplyMessage implements Serializable {
+
+	// message fields
+	private final int wave;             // number of the wave of probes
+	private final long sent;            // chat messages sent (one per peer for each multicast)
+	private final long received;        // chat messages received (also the ones not delivered yet)
+
+	public ProbeReplyMessage(int wave, long sent, long received) {
+		this.wave = wave;
+		this.sent = sent;
+		this.received = received;
+	}
+
+	public int wave() {
+		return wave;
+	}
+
+	public long sent() {
+		return sent;
+	}
+
+	public long received() {
+		return received;
+	}
+}
@@ -0,0 +1,45 @@
+package lab3.vectorclock;
+
+import lab3.messages.ChatMessage;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of creating a ChatMessage, which copies the Vector Clock of the sender.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ChatMessageBenchmark {
+
+	// number of entries of the vector clock
+	@Param({"10", "100", "1000"})
+	public int n;
+
+	private VectorClock vc;
+
+	@Setup
+	public void setup() {
+		vc = new VectorClock();
+		for (int i = 0; i < n; i++) {
+			vc.set(i, i + 1);
+		}
+	}
+
+	@Benchmark
+	public ChatMessage create() {
+		return new ChatMessage("a", 1, 0, vc);
+	}
+
+	@Benchmark
+	public VectorClock copy() {
+		return vc.copy();
+	}
+
+}
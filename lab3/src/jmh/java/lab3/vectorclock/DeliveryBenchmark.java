@@ -0,0 +1,92 @@
+package lab3.vectorclock;
+
+import lab3.messages.ChatMessage;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of buffering a message and extracting it when it is deliverable
+ * (CausalDomain.add and poll, called by handleChatMessage and nextMessage),
+ * with the delivery check over all the entries of its Vector Clock.
+ * <p>
+ * The buffer also contains "depth" messages that can never be delivered,
+ * since they depend on a message that is never received.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DeliveryBenchmark {
+
+	// messages delivered in each invocation
+	private static final int BATCH = 100;
+
+	// number of members of the group
+	@Param({"10", "100", "1000"})
+	public int n;
+
+	// number of blocked messages in the buffer
+	@Param({"0", "100", "1000"})
+	public int depth;
+
+	private CausalDomain domain;
+	private ChatMessage[] messages;
+	private int seq;
+
+	@Setup(Level.Trial)
+	public void setupDomain() {
+		domain = new CausalDomain(0, false, false, 0, null);
+		for (int i = 0; i < n; i++) {
+			domain.addMember(i);
+		}
+
+		// messages of member 2 waiting for one of member 3, never received
+		final VectorClock blocked = new VectorClock(n);
+		for (int i = 0; i < n; i++) {
+			blocked.set(i, 0);
+		}
+		blocked.set(3, 1);
+		for (int k = 1; k <= depth; k++) {
+			blocked.set(2, k);
+			domain.add(new ChatMessage("b", k, 2, blocked));
+		}
+		if (domain.poll() != null) {
+			throw new IllegalStateException("The blocked messages must not be deliverable");
+		}
+
+		messages = new ChatMessage[BATCH];
+		seq = 0;
+	}
+
+	@Setup(Level.Invocation)
+	public void setupMessages() {
+
+		// messages of member 1, each one depending only on the previous one (all the entries are in the clock)
+		final VectorClock vc = new VectorClock(n);
+		for (int i = 0; i < n; i++) {
+			vc.set(i, 0);
+		}
+		for (int k = 0; k < BATCH; k++) {
+			vc.set(1, ++seq);
+			messages[k] = new ChatMessage("a", seq, 1, vc);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void deliver(Blackhole blackhole) {
+		for (ChatMessage message : messages) {
+			domain.add(message);
+			final ChatMessage delivered = domain.poll();
+			domain.merge(delivered);
+			blackhole.consume(delivered);
+		}
+	}
+
+}
@@ -0,0 +1,63 @@
+package lab3.vectorclock;
+
+import lab3.messages.ChatMessage;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of merging the Vector Clock of a message being delivered (CausalDomain.merge, called by deliverChatMessage).
+ * Every message advances all the entries, so every entry is updated.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MergeBenchmark {
+
+	// messages merged in each invocation
+	private static final int BATCH = 100;
+
+	// number of members of the group
+	@Param({"10", "100", "1000"})
+	public int n;
+
+	private CausalDomain domain;
+	private ChatMessage[] messages;
+	private int round;
+
+	@Setup(Level.Iteration)
+	public void setupDomain() {
+		domain = new CausalDomain(0, false, false, 0, null);
+		for (int i = 0; i < n; i++) {
+			domain.addMember(i);
+		}
+		messages = new ChatMessage[BATCH];
+		round = 0;
+	}
+
+	@Setup(Level.Invocation)
+	public void setupMessages() {
+		final VectorClock vc = new VectorClock(n);
+		for (int k = 0; k < BATCH; k++) {
+			round++;
+			for (int i = 1; i < n; i++) {
+				vc.set(i, round);
+			}
+			messages[k] = new ChatMessage("a", round, 1, vc);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void merge() {
+		for (ChatMessage message : messages) {
+			domain.merge(message);
+		}
+	}
+
+}
@@ -0,0 +1,59 @@
+package lab3.vectorclock;
+
+import lab3.messages.ChatMessage;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole path of a message between two members: the sender stamps it (CausalDomain.stamp),
+ * the receiver buffers it, extracts it and merges its Vector Clock (add, poll and merge).
+ * <p>
+ * Run it with the GC profiler to measure the memory allocated for each delivered message:
+ * gradle jmh -PjmhArgs='MessagePathBenchmark -prof gc' (see gc.alloc.rate.norm, in bytes per message).
+ * Apart from the message and the snapshot of its Vector Clock, the path should not allocate.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessagePathBenchmark {
+
+	// number of members of the group
+	@Param({"10", "100", "1000"})
+	public int n;
+
+	private CausalDomain sender;
+	private CausalDomain receiver;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		sender = new CausalDomain(1, false, false, 0, null);
+		receiver = new CausalDomain(0, false, false, 0, null);
+		for (int i = 0; i < n; i++) {
+			sender.addMember(i);
+			receiver.addMember(i);
+		}
+
+		// every member already sent a message: both clocks have n entries, so the messages carry them all
+		for (int i = 0; i < n; i++) {
+			sender.skip(i, 1);
+			receiver.skip(i, 1);
+		}
+	}
+
+	@Benchmark
+	public void deliver(Blackhole blackhole) {
+		final ChatMessage message = sender.stamp("a", 1);
+		receiver.add(message);
+		final ChatMessage delivered = receiver.poll();
+		receiver.merge(delivered);
+		blackhole.consume(delivered);
+	}
+
+}
@@ -0,0 +1,43 @@
+package lab3;
+
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import com.typesafe.config.Config;
+
+/**
+ * Execution profile of the lab3 actors, selected by "lab3.dispatcher" (see reference.conf):
+ * "default" keeps the default dispatcher of Akka, any other value is the name of a dispatcher in "lab3.dispatchers".
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public final class DispatcherProfile {
+
+	// dispatchers of the profiles
+	private static final String DISPATCHERS = "lab3.dispatchers";
+
+	// profile of the default dispatcher of Akka
+	public static final String DEFAULT = "default";
+
+	private DispatcherProfile() {
+	}
+
+	/**
+	 * Run the actors created with the given Props on the dispatcher of the selected profile.
+	 *
+	 * @param system Actor system.
+	 * @param props  Props of the actor.
+	 * @return Props using the dispatcher of the profile.
+	 */
+	public static Props apply(ActorSystem system, Props props) {
+		final Config config = system.settings().config();
+		final String profile = config.getString("lab3.dispatcher");
+		if (DEFAULT.equals(profile)) {
+			return props;
+		}
+		if (!config.hasPath(DISPATCHERS + "." + profile)) {
+			throw new IllegalArgumentException("Unknown dispatcher profile: " + profile);
+		}
+		return props.withDispatcher(DISPATCHERS + "." + profile);
+	}
+
+}
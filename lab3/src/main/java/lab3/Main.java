@@ -5,11 +5,19 @@ import akka.actor.ActorSystem;
 import akka.actor.Props;
 import lab3.actors.Chatter;
 import lab3.actors.Listener;
+import lab3.actors.TerminationDetector;
+import lab3.messages.LeaveMessage;
+import lab3.messages.StartMessage;
 import lab3.messages.StopMessage;
+import lab3.vectorclock.VectorClockActor;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
 
-import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Simulate a system which preserves the order of related messages (message and reply).
@@ -19,43 +27,56 @@ import java.util.List;
 public class Main {
 
 	// entry point
-	public static void main(String[] args) throws InterruptedException {
+	public static void main(String[] args) throws Exception {
 
 		// create the 'lab3' actor system
 		final ActorSystem system = ActorSystem.create("lab3");
 
-		// number of chatting actors
-		final int actorsNumber = 10;
-
-		// actors group
-		final List<ActorRef> actors = new LinkedList<>();
+		// actors group, by ID
+		final Map<Integer, ActorRef> group = new HashMap<>();
 
 		// create actors
-		final ActorRef actor9 = system.actorOf(Props.create(Listener.class, 9, actorsNumber, actors), "listener_9");
-		final ActorRef actor3 = system.actorOf(Props.create(Chatter.class, 3, actorsNumber, actors, "b", false), "chatter_3");
-		final ActorRef actor8 = system.actorOf(Props.create(Listener.class, 8, actorsNumber, actors), "listener_8");
-		final ActorRef actor4 = system.actorOf(Props.create(Chatter.class, 4, actorsNumber, actors, "c", true), "chatter_4");
-		final ActorRef actor5 = system.actorOf(Props.create(Chatter.class, 5, actorsNumber, actors, "c", false), "chatter_5");
-		final ActorRef actor6 = system.actorOf(Props.create(Listener.class, 6, actorsNumber, actors), "listener_6");
-		final ActorRef actor1 = system.actorOf(Props.create(Chatter.class, 1, actorsNumber, actors, "b", true), "chatter_1");
-		final ActorRef actor7 = system.actorOf(Props.create(Listener.class, 7, actorsNumber, actors), "listener_7");
-		final ActorRef actor2 = system.actorOf(Props.create(Chatter.class, 2, actorsNumber, actors, "a", false), "chatter_2");
-		final ActorRef actor0 = system.actorOf(Props.create(Chatter.class, 0, actorsNumber, actors, "a", true), "chatter_0");
-
-		// add all actors to the group
-		actors.addAll(Arrays.asList(actor0, actor1, actor2, actor3, actor4, actor5, actor6, actor7, actor8, actor9));
-		assert actors.size() == actorsNumber;
-
-		// simulate for 1 second
-		Thread.sleep(1000);
+		group.put(9, system.actorOf(DispatcherProfile.apply(system, Props.create(Listener.class, 9)), "listener_9"));
+		group.put(3, system.actorOf(DispatcherProfile.apply(system, Props.create(Chatter.class, 3, "b", false)), "chatter_3"));
+		group.put(8, system.actorOf(DispatcherProfile.apply(system, Props.create(Listener.class, 8)), "listener_8"));
+		group.put(4, system.actorOf(DispatcherProfile.apply(system, Props.create(Chatter.class, 4, "c", true)), "chatter_4"));
+		group.put(5, system.actorOf(DispatcherProfile.apply(system, Props.create(Chatter.class, 5, "c", false)), "chatter_5"));
+		group.put(6, system.actorOf(DispatcherProfile.apply(system, Props.create(Listener.class, 6)), "listener_6"));
+		group.put(1, system.actorOf(DispatcherProfile.apply(system, Props.create(Chatter.class, 1, "b", true)), "chatter_1"));
+		group.put(7, system.actorOf(DispatcherProfile.apply(system, Props.create(Listener.class, 7)), "listener_7"));
+		group.put(2, system.actorOf(DispatcherProfile.apply(system, Props.create(Chatter.class, 2, "a", false)), "chatter_2"));
+		group.put(0, system.actorOf(DispatcherProfile.apply(system, Props.create(Chatter.class, 0, "a", true)), "chatter_0"));
+
+		// all the actors, also the ones that leave the group
+		final List<ActorRef> actors = new ArrayList<>(group.values());
+
+		// tell everybody the members of the group
+		final StartMessage start = new StartMessage(group);
+		group.values().forEach(actor -> actor.tell(start, null));
+
+		// simulate for half a second
+		Thread.sleep(500);
+
+		// a new listener joins the group, while another one leaves it (only in a dynamic group)
+		if (VectorClockActor.isDynamicGroup(system.settings().config())) {
+			final ActorRef actor10 = system.actorOf(DispatcherProfile.apply(system, Props.create(Listener.class, 10)), "listener_10");
+			actor10.tell(new StartMessage(group), null);
+			group.put(10, actor10);
+			actors.add(actor10);
+			group.remove(9).tell(new LeaveMessage(), null);
+		}
+
+		// simulate for another half a second
+		Thread.sleep(500);
 
 		// ask everybody not to send messages anymore
 		final StopMessage stop = new StopMessage();
-		actors.forEach(actor -> actor.tell(stop, null));
+		group.values().forEach(actor -> actor.tell(stop, null));
 
-		// wait for all actors to stop & terminate the system
-		Thread.sleep(1000);
-		system.terminate();
+		// terminate the system as soon as all the messages are delivered
+		final long timeout = system.settings().config().getDuration("lab3.termination.timeout", TimeUnit.MILLISECONDS);
+		system.actorOf(Props.create(TerminationDetector.class, actors, timeout), "termination");
+		Await.ready(system.whenTerminated(), Duration.Inf());
 	}
 
 }
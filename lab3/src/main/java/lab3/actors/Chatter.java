@@ -1,12 +1,11 @@
 package lab3.actors;
 
-import akka.actor.ActorRef;
+import common.output.Output;
 import lab3.messages.ChatMessage;
 import lab3.messages.StopMessage;
+import lab3.messages.TopicRegistry;
 import lab3.vectorclock.VectorClockActor;
 
-import java.util.List;
-
 /**
  * This actor will reply on a given topic.
  *
@@ -17,6 +16,7 @@ public class Chatter extends VectorClockActor {
 
 	// initialization parameters
 	private final String topic;
+	private final int topicId;
 	private final boolean startDiscussion;
 
 	// stop when I get a "StopMessage"
@@ -25,17 +25,18 @@ public class Chatter extends VectorClockActor {
 	/**
 	 * Create a new Chatter actor.
 	 *
-	 * @param id     This actor identifier (used for the vector clock)
-	 * @param actors Actors in the system (used for the vector clock)
-	 * @param topic  Topic to which to reply to
+	 * @param id              This actor identifier (used for the vector clock)
+	 * @param topic           Topic to which to reply to
+	 * @param startDiscussion Send the first message on the topic
 	 */
-	public Chatter(int id, int numberOfActors, List<ActorRef> actors, String topic, boolean startDiscussion) {
+	public Chatter(int id, String topic, boolean startDiscussion) {
 
 		// call super constructor
-		super(id, numberOfActors, actors);
+		super(id);
 
 		// initialize actor parameters
 		this.topic = topic;
+		this.topicId = TopicRegistry.id(topic);
 		this.startDiscussion = startDiscussion;
 
 		// current state
@@ -43,8 +44,7 @@ public class Chatter extends VectorClockActor {
 	}
 
 	@Override
-	public void preStart() {
-		super.preStart();
+	protected void onStart() {
 		if (startDiscussion) {
 			sendChatMessage(topic, 0);
 		}
@@ -54,7 +54,7 @@ public class Chatter extends VectorClockActor {
 	protected final void onChatMessage(ChatMessage message) {
 
 		// if not mine message, reply to it
-		if (!stop && this.topic.equals(message.topic()) && message.sender() != id()) {
+		if (!stop && this.topicId == message.topicId() && message.sender() != id()) {
 
 			// reply to the received message with an incremented value and the same topic
 			sendChatMessage(message.topic(), message.replies());
@@ -64,7 +64,7 @@ public class Chatter extends VectorClockActor {
 	@Override
 	protected void onStopMessage(StopMessage message) {
 		stop = true;
-		System.out.println("Stopping chatter " + id() + "...");
+		Output.print(Output.Level.DEBUG, "Stopping chatter " + id() + "...");
 	}
 
 }
@@ -1,12 +1,9 @@
 package lab3.actors;
 
-import akka.actor.ActorRef;
 import lab3.messages.ChatMessage;
 import lab3.messages.StopMessage;
 import lab3.vectorclock.VectorClockActor;
 
-import java.util.List;
-
 /**
  * This actor will only listen.
  *
@@ -17,14 +14,17 @@ public class Listener extends VectorClockActor {
 	/**
 	 * This actor will listen for all messages.
 	 *
-	 * @param id             This actor identifier (used for the vector clock)
-	 * @param numberOfActors Number of actors in the system (used for the vector clock)
-	 * @param actors         Actors in the system (used for the vector clock)
+	 * @param id This actor identifier (used for the vector clock)
 	 */
-	public Listener(int id, int numberOfActors, List<ActorRef> actors) {
+	public Listener(int id) {
 
 		// call super constructor
-		super(id, numberOfActors, actors);
+		super(id);
+	}
+
+	@Override
+	protected void onStart() {
+		// do nothing
 	}
 
 	@Override
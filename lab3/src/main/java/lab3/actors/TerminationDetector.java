@@ -0,0 +1,187 @@
+package lab3.actors;
+
+import akka.actor.ActorRef;
+import akka.actor.PoisonPill;
+import akka.actor.UntypedActor;
+import com.typesafe.config.Config;
+import common.output.Output;
+import lab3.messages.ProbeMessage;
+import lab3.messages.ProbeReplyMessage;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detect the termination of the chat and terminate the actor system, as soon as the group is quiet.
+ * <p>
+ * The detector uses the four counter method (Mattern): it probes all the actors in waves, and each actor replies with
+ * the number of basic messages (the ones that carry ChatMessages or drive their delivery) it sent and received so far,
+ * and whether it has work pending (e.g. a batch not flushed yet). The chat terminated when two consecutive waves find
+ * all the actors passive and the same totals, with as many messages received as sent: no message was in transit
+ * at the end of the first wave, and no actor became active between the two waves.
+ * The basic messages do not carry anything for the detector, so the protocol costs two probes for each actor per wave.
+ * <p>
+ * If the termination is not detected within the timeout (e.g. a message was lost), the actor system is terminated anyway.
+ * <p>
+ * When the actors live in several actor systems (see lab3.remote), the detector stops them instead,
+ * and each system terminates when its actors are stopped.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public class TerminationDetector extends UntypedActor {
+
+	// periodic messages to myself
+	private enum Tick {
+		WAVE,
+		TIMEOUT
+	}
+
+	// actors to probe
+	private final List<ActorRef> actors;
+
+	// time between two waves & maximum time to wait
+	private final FiniteDuration interval;
+	private final FiniteDuration timeout;
+	private final long started;
+
+	// at the end, stop the actors instead of terminating my actor system
+	private final boolean stopActors;
+
+	// current wave: number, replies & totals
+	private int wave;
+	private int replies;
+	private long sent;
+	private long received;
+	private boolean passive;
+
+	// totals of the previous wave if it found the group quiet, otherwise -1
+	private long quietSent;
+	private long quietReceived;
+
+	/**
+	 * Create a new detector.
+	 *
+	 * @param actors  All the actors that may send or receive basic messages (also the ones that left the group).
+	 * @param timeout Maximum time to wait for the termination, in milliseconds.
+	 */
+	public TerminationDetector(Collection<ActorRef> actors, long timeout) {
+		this(actors, timeout, false);
+	}
+
+	/**
+	 * Create a new detector.
+	 *
+	 * @param actors     All the actors that may send or receive basic messages (also the ones that left the group).
+	 * @param timeout    Maximum time to wait for the termination, in milliseconds.
+	 * @param stopActors At the end, stop the actors (also remote ones) instead of terminating my actor system.
+	 */
+	public TerminationDetector(Collection<ActorRef> actors, long timeout, boolean stopActors) {
+		final Config config = getContext().system().settings().config().getConfig("lab3.termination");
+		this.actors = new ArrayList<>(actors);
+		this.interval = Duration.create(config.getDuration("wave-interval", TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+		this.timeout = Duration.create(timeout, TimeUnit.MILLISECONDS);
+		this.started = System.nanoTime();
+		this.stopActors = stopActors;
+		this.wave = 0;
+		this.quietSent = -1;
+		this.quietReceived = -1;
+	}
+
+	@Override
+	public void preStart() {
+		getContext().system().scheduler().scheduleOnce(
+			timeout,
+			getSelf(),
+			Tick.TIMEOUT,
+			getContext().dispatcher(),
+			getSelf()
+		);
+		startWave();
+	}
+
+	@Override
+	public void onReceive(Object message) {
+		if (message instanceof ProbeReplyMessage) {
+			handleProbeReplyMessage((ProbeReplyMessage) message);
+		} else if (message == Tick.WAVE) {
+			startWave();
+		} else if (message == Tick.TIMEOUT) {
+			Output.print(Output.Level.INFO, String.format("Termination not detected after %d waves: terminating anyway", wave));
+			finish();
+		} else {
+			unhandled(message);
+		}
+	}
+
+	/**
+	 * Probe all the actors.
+	 */
+	private void startWave() {
+		wave++;
+		replies = 0;
+		sent = 0;
+		received = 0;
+		passive = true;
+		final ProbeMessage probe = new ProbeMessage(wave);
+		actors.forEach(actor -> actor.tell(probe, getSelf()));
+	}
+
+	/**
+	 * Add the counters of an actor to the current wave and check the termination when the wave is complete.
+	 *
+	 * @param reply ProbeReplyMessage.
+	 */
+	private void handleProbeReplyMessage(ProbeReplyMessage reply) {
+		if (reply.wave() != wave) {
+			return;
+		}
+		replies++;
+		sent += reply.sent();
+		received += reply.received();
+		passive &= reply.passive();
+		if (replies < actors.size()) {
+			return;
+		}
+
+		// the group was quiet for two waves in a row -> terminated
+		final boolean quiet = passive && sent == received;
+		if (quiet && sent == quietSent && received == quietReceived) {
+			Output.print(Output.Level.INFO, String.format(
+				"Termination detected after %d waves, %d ms (%d basic messages)",
+				wave,
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started),
+				sent
+			));
+			finish();
+			return;
+		}
+
+		// next wave
+		quietSent = quiet ? sent : -1;
+		quietReceived = quiet ? received : -1;
+		getContext().system().scheduler().scheduleOnce(
+			interval,
+			getSelf(),
+			Tick.WAVE,
+			getContext().dispatcher(),
+			getSelf()
+		);
+	}
+
+	/**
+	 * The chat is over: stop the actors or terminate my actor system.
+	 */
+	private void finish() {
+		if (stopActors) {
+			actors.forEach(actor -> actor.tell(PoisonPill.getInstance(), getSelf()));
+			getContext().stop(getSelf());
+		} else {
+			getContext().system().terminate();
+		}
+	}
+
+}
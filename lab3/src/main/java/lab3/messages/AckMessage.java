@@ -0,0 +1,43 @@
+package lab3.messages;
+
+import java.io.Serializable;
+
+/**
+ * Acknowledgment of a TotalOrderMessage, sent to every member by the Lamport total order protocol.
+ * It carries the Lamport clock of its sender: on a FIFO link, every later message has a greater clock.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ * @see TotalOrderMessage
+ */
+public class AckMessage implements Serializable {
+
+	private final int from;
+	private final int seq;
+	private final long clock;
+
+	/**
+	 * Construct a new Ack Message.
+	 *
+	 * @param from  ID of the sender.
+	 * @param seq   Sequence number of this message on the link from the sender to the receiver.
+	 * @param clock Lamport clock of the sender.
+	 */
+	public AckMessage(int from, int seq, long clock) {
+		this.from = from;
+		this.seq = seq;
+		this.clock = clock;
+	}
+
+	public int from() {
+		return from;
+	}
+
+	public int seq() {
+		return seq;
+	}
+
+	public long clock() {
+		return clock;
+	}
+
+}
@@ -0,0 +1,34 @@
+package lab3.messages;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Envelope with several ChatMessages (full or compact) for the same destination,
+ * sent together to save mailbox operations and serialization overhead.
+ * The receiver handles them in the same order as they were sent.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ * @see ChatMessage
+ * @see CompactChatMessage
+ */
+public class BatchMessage implements Serializable {
+
+	private final List<Object> messages;
+
+	/**
+	 * Construct a new Batch Message.
+	 *
+	 * @param messages The messages, in the order in which they were sent.
+	 */
+	public BatchMessage(List<Object> messages) {
+		this.messages = Collections.unmodifiableList(new ArrayList<>(messages));
+	}
+
+	public List<Object> messages() {
+		return messages;
+	}
+
+}
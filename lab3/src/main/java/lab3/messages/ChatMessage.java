@@ -1,10 +1,15 @@
 package lab3.messages;
 
+import lab3.metrics.WallClock;
+import lab3.vectorclock.VectorClock;
+
 import java.io.Serializable;
-import java.util.Arrays;
 
 /**
  * This is a message exchanged by Chatter actors.
+ * <p>
+ * The topic is interned in the {@link TopicRegistry} and the Vector Clock is an immutable snapshot,
+ * so the same message can be sent to all the destinations of a multicast.
  *
  * @author Davide Pedranz <davide.pedranz@gmail.com>
  * @see lab3.actors.Chatter
@@ -12,29 +17,55 @@ import java.util.Arrays;
 public class ChatMessage implements Serializable, Comparable {
 
 	private final String topic;
+	private final transient int topicId;
 	private final int replies;
 	private final int senderID;
-	private final int[] vc;
+	private final VectorClock vc;
+	private final long timestamp;
 
 	/**
-	 * Construct a new Chat Message.
+	 * Construct a new Chat Message, created now.
 	 *
 	 * @param topic    Topic of the message.
 	 * @param replies  Number of this message for this topic.
 	 * @param senderID The ID of the actor who created this message.
-	 * @param vc       Vector Clock (deep copied).
+	 * @param vc       Vector Clock (deep copied, unless it is already an immutable snapshot).
 	 */
-	public ChatMessage(String topic, int replies, int senderID, int[] vc) {
-		this.topic = topic;
+	public ChatMessage(String topic, int replies, int senderID, VectorClock vc) {
+		this(topic, replies, senderID, vc, WallClock.nanoTime());
+	}
+
+	/**
+	 * Construct a new Chat Message.
+	 *
+	 * @param topic     Topic of the message.
+	 * @param replies   Number of this message for this topic.
+	 * @param senderID  The ID of the actor who created this message.
+	 * @param vc        Vector Clock (deep copied, unless it is already an immutable snapshot).
+	 * @param timestamp When the message was created, from WallClock.nanoTime() (comparable across the JVMs of the same host).
+	 */
+	public ChatMessage(String topic, int replies, int senderID, VectorClock vc, long timestamp) {
+		this.topicId = TopicRegistry.id(topic);
+		this.topic = TopicRegistry.topic(topicId);
 		this.replies = replies;
 		this.senderID = senderID;
-		this.vc = Arrays.copyOf(vc, vc.length);
+		this.vc = vc.snapshot();
+		this.timestamp = timestamp;
 	}
 
 	public String topic() {
 		return topic;
 	}
 
+	/**
+	 * Return the ID of the topic in the {@link TopicRegistry} of this JVM.
+	 *
+	 * @return ID of the topic.
+	 */
+	public int topicId() {
+		return topicId;
+	}
+
 	public int replies() {
 		return replies;
 	}
@@ -43,15 +74,26 @@ public class ChatMessage implements Serializable, Comparable {
 		return senderID;
 	}
 
-	public int[] vc() {
+	public VectorClock vc() {
 		return vc;
 	}
 
+	public long timestamp() {
+		return timestamp;
+	}
+
+	// topics by ID (in the order in which they were registered), then by number of replies
 	@Override
 	public int compareTo(Object o) {
 		final ChatMessage other = (ChatMessage) o;
-		final int compareTopic = this.topic.compareTo(other.topic);
-		return compareTopic != 0 ? compareTopic : (this.replies - other.replies);
+		return this.topicId != other.topicId
+			? Integer.compare(this.topicId, other.topicId)
+			: (this.replies - other.replies);
+	}
+
+	// the ID of the topic is local to the JVM -> intern the topic again
+	private Object readResolve() {
+		return new ChatMessage(topic, replies, senderID, vc, timestamp);
 	}
 
 	@Override
@@ -0,0 +1,72 @@
+package lab3.messages;
+
+import java.io.Serializable;
+
+/**
+ * Compact form of a ChatMessage sent over a link (sender -> receiver).
+ * Instead of the full Vector Clock, it carries only the entries changed since the previous message on the same link.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ * @see ChatMessage
+ */
+public class CompactChatMessage implements Serializable {
+
+	private final String topic;
+	private final int replies;
+	private final int senderID;
+	private final int seq;
+	private final int[] entries;
+	private final int[] values;
+	private final long timestamp;
+
+	/**
+	 * Construct a new Compact Chat Message.
+	 *
+	 * @param topic     Topic of the message.
+	 * @param replies   Number of this message for this topic.
+	 * @param senderID  The ID of the actor who created this message.
+	 * @param seq       Sequence number of the message on the link (sender -> receiver).
+	 * @param entries   IDs of the entries of the Vector Clock changed since the previous message on the link (not copied).
+	 * @param values    New values of the changed entries (not copied).
+	 * @param timestamp When the message was created (see {@link ChatMessage#timestamp()}).
+	 */
+	public CompactChatMessage(String topic, int replies, int senderID, int seq, int[] entries, int[] values, long timestamp) {
+		assert entries.length == values.length;
+		this.topic = topic;
+		this.replies = replies;
+		this.senderID = senderID;
+		this.seq = seq;
+		this.entries = entries;
+		this.values = values;
+		this.timestamp = timestamp;
+	}
+
+	public String topic() {
+		return topic;
+	}
+
+	public int replies() {
+		return replies;
+	}
+
+	public int sender() {
+		return senderID;
+	}
+
+	public int seq() {
+		return seq;
+	}
+
+	public int[] entries() {
+		return entries;
+	}
+
+	public int[] values() {
+		return values;
+	}
+
+	public long timestamp() {
+		return timestamp;
+	}
+
+}
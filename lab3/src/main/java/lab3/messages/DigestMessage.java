@@ -0,0 +1,40 @@
+package lab3.messages;
+
+import lab3.vectorclock.VectorClock;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This message is sent periodically by every actor to the other members of the group,
+ * to tell them which ChatMessages it has delivered (used to detect causally stable messages).
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public class DigestMessage implements Serializable {
+
+	private final int id;
+	private final Map<String, VectorClock> delivered;
+
+	/**
+	 * Construct a new Digest Message.
+	 *
+	 * @param id        The ID of the actor who created this message.
+	 * @param delivered Vector Clock of the delivered messages, by causal domain (not copied).
+	 */
+	public DigestMessage(int id, Map<String, VectorClock> delivered) {
+		this.id = id;
+		this.delivered = Collections.unmodifiableMap(new HashMap<>(delivered));
+	}
+
+	public int id() {
+		return id;
+	}
+
+	public Map<String, VectorClock> delivered() {
+		return delivered;
+	}
+
+}
@@ -0,0 +1,40 @@
+package lab3.messages;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This message is sent by an actor leaving the group to all the other members.
+ * It tells them how many ChatMessages the actor sent: once they are all delivered,
+ * its entry can be removed from the Vector Clock.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ * @see LeaveMessage
+ */
+public class GoodbyeMessage implements Serializable {
+
+	private final int id;
+	private final Map<String, Integer> sent;
+
+	/**
+	 * Construct a new Goodbye Message.
+	 *
+	 * @param id   The ID of the leaving actor.
+	 * @param sent Total number of ChatMessages sent by the leaving actor, by causal domain (see VectorClockActor).
+	 */
+	public GoodbyeMessage(int id, Map<String, Integer> sent) {
+		this.id = id;
+		this.sent = Collections.unmodifiableMap(new HashMap<>(sent));
+	}
+
+	public int id() {
+		return id;
+	}
+
+	public Map<String, Integer> sent() {
+		return sent;
+	}
+
+}
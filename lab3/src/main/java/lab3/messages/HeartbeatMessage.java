@@ -0,0 +1,39 @@
+package lab3.messages;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This message is sent by an actor to the other members when it stops sending ChatMessages for a while,
+ * to tell them how many it sent: a member that lost the last ones would not notice it otherwise.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ * @see NackMessage
+ */
+public class HeartbeatMessage implements Serializable {
+
+	private final int id;
+	private final Map<String, Integer> sent;
+
+	/**
+	 * Construct a new Heartbeat Message.
+	 *
+	 * @param id   The ID of the actor who created this message.
+	 * @param sent Number of messages sent by the actor, by causal domain (copied).
+	 */
+	public HeartbeatMessage(int id, Map<String, Integer> sent) {
+		this.id = id;
+		this.sent = Collections.unmodifiableMap(new HashMap<>(sent));
+	}
+
+	public int id() {
+		return id;
+	}
+
+	public Map<String, Integer> sent() {
+		return sent;
+	}
+
+}
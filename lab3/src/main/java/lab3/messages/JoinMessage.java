@@ -0,0 +1,28 @@
+package lab3.messages;
+
+import java.io.Serializable;
+
+/**
+ * This message is sent by a new actor to all the members of the group to join it.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ * @see WelcomeMessage
+ */
+public class JoinMessage implements Serializable {
+
+	private final int id;
+
+	/**
+	 * Construct a new Join Message.
+	 *
+	 * @param id The ID of the joining actor.
+	 */
+	public JoinMessage(int id) {
+		this.id = id;
+	}
+
+	public int id() {
+		return id;
+	}
+
+}
@@ -0,0 +1,12 @@
+package lab3.messages;
+
+import java.io.Serializable;
+
+/**
+ * This empty message asks an actor to leave the group.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ * @see GoodbyeMessage
+ */
+public class LeaveMessage implements Serializable {
+}
@@ -0,0 +1,50 @@
+package lab3.messages;
+
+import java.io.Serializable;
+
+/**
+ * Negative acknowledgment: a member asks the sender of some ChatMessages it never received to send them again.
+ * The messages are identified by the causal domain and by the sender's entry of their vector clock.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ * @see HeartbeatMessage
+ */
+public class NackMessage implements Serializable {
+
+	private final int requester;
+	private final String domain;
+	private final int from;
+	private final int to;
+
+	/**
+	 * Construct a new Nack Message.
+	 *
+	 * @param requester ID of the actor that misses the messages.
+	 * @param domain    Key of the causal domain of the messages.
+	 * @param from      Sender's entry of the vector clock of the first missing message.
+	 * @param to        Sender's entry of the vector clock of the last missing message (included).
+	 */
+	public NackMessage(int requester, String domain, int from, int to) {
+		this.requester = requester;
+		this.domain = domain;
+		this.from = from;
+		this.to = to;
+	}
+
+	public int requester() {
+		return requester;
+	}
+
+	public String domain() {
+		return domain;
+	}
+
+	public int from() {
+		return from;
+	}
+
+	public int to() {
+		return to;
+	}
+
+}
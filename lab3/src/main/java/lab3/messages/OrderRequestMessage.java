@@ -0,0 +1,37 @@
+package lab3.messages;
+
+import java.io.Serializable;
+
+/**
+ * ChatMessage sent to the first member of the entry of its sender, with plausible clocks:
+ * the first member gives it its turn in the entry and sends it to everybody.
+ * The requests of each sender are numbered, so that they get their turn in the order in which they were sent.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ * @see ChatMessage
+ */
+public class OrderRequestMessage implements Serializable {
+
+	private final int seq;
+	private final ChatMessage message;
+
+	/**
+	 * Construct a new Order Request Message.
+	 *
+	 * @param seq     Sequence number of the request among the ones of the same sender.
+	 * @param message The ChatMessage, stamped with the messages delivered by its sender.
+	 */
+	public OrderRequestMessage(int seq, ChatMessage message) {
+		this.seq = seq;
+		this.message = message;
+	}
+
+	public int seq() {
+		return seq;
+	}
+
+	public ChatMessage message() {
+		return message;
+	}
+
+}
@@ -0,0 +1,28 @@
+package lab3.messages;
+
+import java.io.Serializable;
+
+/**
+ * Request of the termination detector: the actor replies with its counters of basic messages.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ * @see ProbeReplyMessage
+ */
+public class ProbeMessage implements Serializable {
+
+	private final int wave;
+
+	/**
+	 * Construct a new Probe Message.
+	 *
+	 * @param wave Number of the wave of the detector.
+	 */
+	public ProbeMessage(int wave) {
+		this.wave = wave;
+	}
+
+	public int wave() {
+		return wave;
+	}
+
+}
@@ -0,0 +1,50 @@
+package lab3.messages;
+
+import java.io.Serializable;
+
+/**
+ * Reply of an actor to a ProbeMessage: the basic messages (the ones that carry ChatMessages or drive their delivery)
+ * it sent and received so far, and whether it has work pending that will send more of them.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ * @see ProbeMessage
+ */
+public class ProbeReplyMessage implements Serializable {
+
+	private final int wave;
+	private final long sent;
+	private final long received;
+	private final boolean passive;
+
+	/**
+	 * Construct a new Probe Reply Message.
+	 *
+	 * @param wave     Number of the wave of the ProbeMessage.
+	 * @param sent     Basic messages sent by the actor.
+	 * @param received Basic messages received by the actor.
+	 * @param passive  True if the actor will not send basic messages unless it receives one.
+	 */
+	public ProbeReplyMessage(int wave, long sent, long received, boolean passive) {
+		this.wave = wave;
+		this.sent = sent;
+		this.received = received;
+		this.passive = passive;
+	}
+
+	public int wave() {
+		return wave;
+	}
+
+	public long sent() {
+		return sent;
+	}
+
+	public long received() {
+		return received;
+	}
+
+	public boolean passive() {
+		return passive;
+	}
+
+}
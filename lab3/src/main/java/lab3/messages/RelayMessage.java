@@ -0,0 +1,51 @@
+package lab3.messages;
+
+import java.io.Serializable;
+
+/**
+ * ChatMessage disseminated along a tree rooted at its sender.
+ * The receiver delivers the message and forwards it to the members in the range [from, to) of the targets:
+ * the range is its subtree, the array is shared by all the RelayMessages of the same tree and never modified.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ * @see ChatMessage
+ */
+public class RelayMessage implements Serializable {
+
+	private final ChatMessage message;
+	private final int[] targets;
+	private final int from;
+	private final int to;
+
+	/**
+	 * Construct a new Relay Message.
+	 *
+	 * @param message The ChatMessage.
+	 * @param targets IDs of the members reached by the tree (except the sender).
+	 * @param from    First index of the subtree of the receiver (inclusive).
+	 * @param to      Last index of the subtree of the receiver (exclusive).
+	 */
+	public RelayMessage(ChatMessage message, int[] targets, int from, int to) {
+		this.message = message;
+		this.targets = targets;
+		this.from = from;
+		this.to = to;
+	}
+
+	public ChatMessage message() {
+		return message;
+	}
+
+	public int[] targets() {
+		return targets;
+	}
+
+	public int from() {
+		return from;
+	}
+
+	public int to() {
+		return to;
+	}
+
+}
@@ -0,0 +1,33 @@
+package lab3.messages;
+
+import akka.actor.ActorRef;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This message informs an actor about the members of the group.
+ * If the actor is not a member yet, it will join the group.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public class StartMessage implements Serializable {
+
+	private final Map<Integer, ActorRef> group;
+
+	/**
+	 * Construct a new Start Message.
+	 *
+	 * @param group Members of the group, by ID (copied).
+	 */
+	public StartMessage(Map<Integer, ActorRef> group) {
+		this.group = Collections.unmodifiableMap(new HashMap<>(group));
+	}
+
+	public Map<Integer, ActorRef> group() {
+		return group;
+	}
+
+}
@@ -0,0 +1,57 @@
+package lab3.messages;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registry of the topics of the ChatMessages, shared by all the actors of the JVM.
+ * Each topic is interned to a small int ID, assigned in the order in which the topics are registered,
+ * so that the actors compare topics as ints instead of Strings.
+ * <p>
+ * The IDs are local to the JVM: they are never sent to other JVMs (see the serializers of the messages).
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public final class TopicRegistry {
+
+	// topic -> ID & ID -> topic
+	private static final ConcurrentMap<String, Integer> IDS = new ConcurrentHashMap<>();
+	private static final List<String> TOPICS = new CopyOnWriteArrayList<>();
+
+	private TopicRegistry() {
+	}
+
+	/**
+	 * Return the ID of a topic, registering it if needed.
+	 *
+	 * @param topic Topic.
+	 * @return ID of the topic.
+	 */
+	public static int id(String topic) {
+		final Integer id = IDS.get(topic);
+		return id != null ? id : register(topic);
+	}
+
+	/**
+	 * Return the topic with the given ID.
+	 *
+	 * @param id ID of a registered topic.
+	 * @return The topic (always the same String instance).
+	 */
+	public static String topic(int id) {
+		return TOPICS.get(id);
+	}
+
+	private static synchronized int register(String topic) {
+		final Integer id = IDS.get(topic);
+		if (id != null) {
+			return id;
+		}
+		TOPICS.add(topic);
+		IDS.put(topic, TOPICS.size() - 1);
+		return TOPICS.size() - 1;
+	}
+
+}
@@ -0,0 +1,50 @@
+package lab3.messages;
+
+import java.io.Serializable;
+
+/**
+ * ChatMessage exchanged by a total order protocol (see "lab3.ordering").
+ * The messages on each link are numbered, so that the receiver can handle them in the order in which they were sent.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ * @see AckMessage
+ */
+public class TotalOrderMessage implements Serializable {
+
+	private final int from;
+	private final int seq;
+	private final long clock;
+	private final ChatMessage message;
+
+	/**
+	 * Construct a new Total Order Message.
+	 *
+	 * @param from    ID of the sender of this message (not necessarily the one of the ChatMessage).
+	 * @param seq     Sequence number of this message on the link from the sender to the receiver.
+	 * @param clock   Lamport clock of the ChatMessage (0 if not used by the protocol).
+	 * @param message The ChatMessage.
+	 */
+	public TotalOrderMessage(int from, int seq, long clock, ChatMessage message) {
+		this.from = from;
+		this.seq = seq;
+		this.clock = clock;
+		this.message = message;
+	}
+
+	public int from() {
+		return from;
+	}
+
+	public int seq() {
+		return seq;
+	}
+
+	public long clock() {
+		return clock;
+	}
+
+	public ChatMessage message() {
+		return message;
+	}
+
+}
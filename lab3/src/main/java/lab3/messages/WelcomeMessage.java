@@ -0,0 +1,40 @@
+package lab3.messages;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This message is the reply of a member of the group to a JoinMessage.
+ * It tells the new actor how many ChatMessages the member sent before the join:
+ * the new actor will never receive them, so it must not wait for them.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ * @see JoinMessage
+ */
+public class WelcomeMessage implements Serializable {
+
+	private final int id;
+	private final Map<String, Integer> sent;
+
+	/**
+	 * Construct a new Welcome Message.
+	 *
+	 * @param id   The ID of the member.
+	 * @param sent Number of ChatMessages sent by the member before the join, by causal domain (see VectorClockActor).
+	 */
+	public WelcomeMessage(int id, Map<String, Integer> sent) {
+		this.id = id;
+		this.sent = Collections.unmodifiableMap(new HashMap<>(sent));
+	}
+
+	public int id() {
+		return id;
+	}
+
+	public Map<String, Integer> sent() {
+		return sent;
+	}
+
+}
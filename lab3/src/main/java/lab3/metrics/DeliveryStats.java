@@ -0,0 +1,115 @@
+package lab3.metrics;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Snapshot of the metrics of the causal delivery of an actor.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public final class DeliveryStats implements Serializable {
+
+	private final int bufferDepth;
+	private final long delivered;
+	private final long waited;
+	private final long scans;
+	private final long checks;
+	private final double waitMean;
+	private final long waitP50;
+	private final long waitP99;
+	private final long waitP999;
+	private final long waitMax;
+	private final Map<Integer, Long> blockedOn;
+
+	/**
+	 * Create a new snapshot.
+	 *
+	 * @param bufferDepth Number of messages in the buffer.
+	 * @param delivered   Number of messages delivered from the buffer.
+	 * @param waited      Number of delivered messages that waited for another message (not deliverable when they arrived).
+	 * @param scans       Number of times the buffer was asked for the next message to deliver.
+	 * @param checks      Number of times the buffer checked if a message can be delivered.
+	 * @param bufferWait  Time spent in the buffer by the delivered messages, in microseconds (not stored).
+	 * @param blockedOn   Number of times each member blocked the delivery of a message, by ID (copied).
+	 */
+	public DeliveryStats(int bufferDepth, long delivered, long waited, long scans, long checks,
+	                     Histogram bufferWait, Map<Integer, Long> blockedOn) {
+		this.bufferDepth = bufferDepth;
+		this.delivered = delivered;
+		this.waited = waited;
+		this.scans = scans;
+		this.checks = checks;
+		this.waitMean = bufferWait.mean();
+		this.waitP50 = bufferWait.percentile(50);
+		this.waitP99 = bufferWait.percentile(99);
+		this.waitP999 = bufferWait.percentile(99.9);
+		this.waitMax = bufferWait.max();
+		this.blockedOn = Collections.unmodifiableMap(new TreeMap<>(blockedOn));
+	}
+
+	public int bufferDepth() {
+		return bufferDepth;
+	}
+
+	public long delivered() {
+		return delivered;
+	}
+
+	public long waited() {
+		return waited;
+	}
+
+	public long scans() {
+		return scans;
+	}
+
+	public long checks() {
+		return checks;
+	}
+
+	public double waitMean() {
+		return waitMean;
+	}
+
+	public long waitP50() {
+		return waitP50;
+	}
+
+	public long waitP99() {
+		return waitP99;
+	}
+
+	public long waitP999() {
+		return waitP999;
+	}
+
+	public long waitMax() {
+		return waitMax;
+	}
+
+	public Map<Integer, Long> blockedOn() {
+		return blockedOn;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+			"depth=%d delivered=%d waited=%d scans=%d checks=%d wait(us): mean=%.1f p50=%d p99=%d p999=%d max=%d blocked-on=%s",
+			bufferDepth,
+			delivered,
+			waited,
+			scans,
+			checks,
+			waitMean,
+			waitP50,
+			waitP99,
+			waitP999,
+			waitMax,
+			blockedOn
+		);
+	}
+
+}
@@ -0,0 +1,114 @@
+package lab3.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+/**
+ * MXBean exposing the last snapshot of the metrics of an actor, registered in the platform MBean server
+ * as "lab3:type=VectorClockActor,system=...,actor=...".
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public final class DeliveryStatsBean implements DeliveryStatsMXBean {
+
+	private final ObjectName name;
+
+	// last snapshot, written by the actor and read by JMX
+	private volatile DeliveryStats stats;
+
+	/**
+	 * Create and register a new MXBean.
+	 *
+	 * @param system Name of the actor system.
+	 * @param actor  Name of the actor.
+	 * @param stats  Initial snapshot.
+	 * @throws JMException If the MXBean cannot be registered.
+	 */
+	public DeliveryStatsBean(String system, String actor, DeliveryStats stats) throws JMException {
+		this.name = new ObjectName("lab3:type=VectorClockActor,system=" + ObjectName.quote(system) + ",actor=" + ObjectName.quote(actor));
+		this.stats = stats;
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+	}
+
+	/**
+	 * Publish a new snapshot.
+	 *
+	 * @param stats Snapshot of the metrics.
+	 */
+	public void update(DeliveryStats stats) {
+		this.stats = stats;
+	}
+
+	/**
+	 * Remove the MXBean from the platform MBean server.
+	 */
+	public void unregister() {
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+		} catch (JMException e) {
+			// already removed
+		}
+	}
+
+	@Override
+	public int getBufferDepth() {
+		return stats.bufferDepth();
+	}
+
+	@Override
+	public long getDeliveredMessages() {
+		return stats.delivered();
+	}
+
+	@Override
+	public long getWaitedMessages() {
+		return stats.waited();
+	}
+
+	@Override
+	public long getBufferScans() {
+		return stats.scans();
+	}
+
+	@Override
+	public long getDeliveryChecks() {
+		return stats.checks();
+	}
+
+	@Override
+	public double getBufferWaitMeanMicros() {
+		return stats.waitMean();
+	}
+
+	@Override
+	public long getBufferWaitP50Micros() {
+		return stats.waitP50();
+	}
+
+	@Override
+	public long getBufferWaitP99Micros() {
+		return stats.waitP99();
+	}
+
+	@Override
+	public long getBufferWaitP999Micros() {
+		return stats.waitP999();
+	}
+
+	@Override
+	public long getBufferWaitMaxMicros() {
+		return stats.waitMax();
+	}
+
+	@Override
+	public Map<Integer, Long> getBlockedOn() {
+		return stats.blockedOn();
+	}
+
+}
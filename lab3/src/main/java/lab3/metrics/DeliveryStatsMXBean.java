@@ -0,0 +1,35 @@
+package lab3.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the metrics of the causal delivery of an actor, updated periodically.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ * @see DeliveryStats
+ */
+public interface DeliveryStatsMXBean {
+
+	int getBufferDepth();
+
+	long getDeliveredMessages();
+
+	long getWaitedMessages();
+
+	long getBufferScans();
+
+	long getDeliveryChecks();
+
+	double getBufferWaitMeanMicros();
+
+	long getBufferWaitP50Micros();
+
+	long getBufferWaitP99Micros();
+
+	long getBufferWaitP999Micros();
+
+	long getBufferWaitMaxMicros();
+
+	Map<Integer, Long> getBlockedOn();
+
+}
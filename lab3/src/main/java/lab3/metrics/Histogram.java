@@ -0,0 +1,190 @@
+package lab3.metrics;
+
+import java.io.Serializable;
+
+/**
+ * Histogram of non negative values (e.g. latencies in microseconds) with log-linear buckets.
+ * <p>
+ * Values below 64 have their own bucket; larger values share a bucket with the ones
+ * that have the same 6 most significant bits, so every value is recorded with a relative error below 1/32
+ * in constant memory, whatever the number of values.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public final class Histogram implements Serializable {
+
+	// buckets for each power of 2
+	private static final int SUB_BITS = 6;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int HALF = SUB_BUCKETS / 2;
+	private static final int BUCKETS = (64 - SUB_BITS + 1) * HALF + HALF;
+
+	private final long[] counts;
+	private long count;
+	private long sum;
+	private long max;
+
+	/**
+	 * Create a new empty histogram.
+	 */
+	public Histogram() {
+		this.counts = new long[BUCKETS];
+		this.count = 0;
+		this.sum = 0;
+		this.max = 0;
+	}
+
+	/**
+	 * Record a value.
+	 *
+	 * @param value Value to record (negative values are recorded as 0).
+	 */
+	public void record(long value) {
+		final long v = Math.max(0, value);
+		counts[bucket(v)]++;
+		count++;
+		sum += v;
+		max = Math.max(max, v);
+	}
+
+	/**
+	 * Add all the values recorded by another histogram.
+	 *
+	 * @param other Another histogram.
+	 */
+	public void add(Histogram other) {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] += other.counts[i];
+		}
+		count += other.count;
+		sum += other.sum;
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * Return the number of recorded values.
+	 *
+	 * @return Number of values.
+	 */
+	public long count() {
+		return count;
+	}
+
+	/**
+	 * Return the mean of the recorded values.
+	 *
+	 * @return Mean, 0 if empty.
+	 */
+	public double mean() {
+		return count == 0 ? 0 : (double) sum / count;
+	}
+
+	/**
+	 * Return the largest recorded value.
+	 *
+	 * @return Maximum, 0 if empty.
+	 */
+	public long max() {
+		return max;
+	}
+
+	/**
+	 * Return a percentile of the recorded values.
+	 *
+	 * @param percentile Percentile, in [0, 100].
+	 * @return Highest value of the bucket of the percentile (at most the maximum), 0 if empty.
+	 */
+	public long percentile(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(max, highest(i));
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Write the histogram as text, to merge the histograms of several processes (see {@link #decode}).
+	 * Format: count sum max, then bucket:count for each non empty bucket, separated by spaces.
+	 *
+	 * @return Text form of the histogram.
+	 */
+	public String encode() {
+		final StringBuilder builder = new StringBuilder()
+			.append(count).append(' ')
+			.append(sum).append(' ')
+			.append(max);
+		for (int i = 0; i < BUCKETS; i++) {
+			if (counts[i] > 0) {
+				builder.append(' ').append(i).append(':').append(counts[i]);
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Read a histogram written by {@link #encode}.
+	 *
+	 * @param text Text form of the histogram.
+	 * @return Histogram.
+	 * @throws IllegalArgumentException If the text is not a histogram.
+	 */
+	public static Histogram decode(String text) {
+		final String[] fields = text.trim().split(" ");
+		if (fields.length < 3) {
+			throw new IllegalArgumentException("Not a histogram: " + text);
+		}
+		final Histogram histogram = new Histogram();
+		try {
+			histogram.count = Long.parseLong(fields[0]);
+			histogram.sum = Long.parseLong(fields[1]);
+			histogram.max = Long.parseLong(fields[2]);
+			for (int i = 3; i < fields.length; i++) {
+				final int colon = fields[i].indexOf(':');
+				histogram.counts[Integer.parseInt(fields[i].substring(0, colon))] = Long.parseLong(fields[i].substring(colon + 1));
+			}
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Not a histogram: " + text, e);
+		}
+		return histogram;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+			"n=%d mean=%.1f p50=%d p99=%d p999=%d max=%d",
+			count,
+			mean(),
+			percentile(50),
+			percentile(99),
+			percentile(99.9),
+			max
+		);
+	}
+
+	// index of the bucket of a value
+	private static int bucket(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		final int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+		return (shift + 1) * HALF + (int) (value >>> shift) - HALF;
+	}
+
+	// highest value of a bucket
+	private static long highest(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		final int shift = bucket / HALF - 1;
+		final long lowest = (long) (bucket % HALF + HALF) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+
+}
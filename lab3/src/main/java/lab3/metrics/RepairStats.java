@@ -0,0 +1,112 @@
+package lab3.metrics;
+
+import java.io.Serializable;
+
+/**
+ * Snapshot of the faults injected into the messages sent by an actor and of the work of its reliability layer.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public final class RepairStats implements Serializable {
+
+	private final long sent;
+	private final long discarded;
+	private final long dropped;
+	private final long duplicated;
+	private final long ignored;
+	private final long nacks;
+	private final long retransmitted;
+	private final long heartbeats;
+	private final long unrecoverable;
+	private final Histogram recovery;
+
+	/**
+	 * Create a new snapshot.
+	 *
+	 * @param sent          ChatMessages sent for the first time, once for each receiver.
+	 * @param discarded     ChatMessages discarded from the store because delivered by all the members (causally stable).
+	 * @param dropped       Messages dropped by the fault injector (also NACKs and retransmissions).
+	 * @param duplicated    Messages delivered twice by the fault injector.
+	 * @param ignored       Copies of ChatMessages received again and ignored.
+	 * @param nacks         NACKs sent.
+	 * @param retransmitted ChatMessages sent again on request.
+	 * @param heartbeats    Heartbeats sent.
+	 * @param unrecoverable ChatMessages requested but no longer in the store.
+	 * @param recovery      Time from the detection of a missing message to its arrival, in microseconds (copied).
+	 */
+	public RepairStats(long sent, long discarded, long dropped, long duplicated, long ignored, long nacks, long retransmitted,
+	                   long heartbeats, long unrecoverable, Histogram recovery) {
+		this.sent = sent;
+		this.discarded = discarded;
+		this.dropped = dropped;
+		this.duplicated = duplicated;
+		this.ignored = ignored;
+		this.nacks = nacks;
+		this.retransmitted = retransmitted;
+		this.heartbeats = heartbeats;
+		this.unrecoverable = unrecoverable;
+		this.recovery = new Histogram();
+		this.recovery.add(recovery);
+	}
+
+	public long sent() {
+		return sent;
+	}
+
+	public long discarded() {
+		return discarded;
+	}
+
+	public long dropped() {
+		return dropped;
+	}
+
+	public long duplicated() {
+		return duplicated;
+	}
+
+	public long ignored() {
+		return ignored;
+	}
+
+	public long nacks() {
+		return nacks;
+	}
+
+	public long retransmitted() {
+		return retransmitted;
+	}
+
+	public long heartbeats() {
+		return heartbeats;
+	}
+
+	public long unrecoverable() {
+		return unrecoverable;
+	}
+
+	public Histogram recovery() {
+		return recovery;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+			"sent=%d discarded=%d dropped=%d duplicated=%d ignored=%d nacks=%d retransmitted=%d heartbeats=%d unrecoverable=%d recovered=%d recovery(us): p50=%d p99=%d max=%d",
+			sent,
+			discarded,
+			dropped,
+			duplicated,
+			ignored,
+			nacks,
+			retransmitted,
+			heartbeats,
+			unrecoverable,
+			recovery.count(),
+			recovery.percentile(50),
+			recovery.percentile(99),
+			recovery.max()
+		);
+	}
+
+}
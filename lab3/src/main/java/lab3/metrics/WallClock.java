@@ -0,0 +1,42 @@
+package lab3.metrics;
+
+/**
+ * Monotonic clock in nanoseconds, shifted to the wall clock: the timestamps of the ChatMessages are comparable
+ * across the JVMs of the same host (e.g. the nodes of a cluster, see lab3.remote), not only within a JVM.
+ * <p>
+ * Each JVM measures once the offset between System.nanoTime() and System.currentTimeMillis(), at the edge of a tick
+ * of the wall clock, so the offsets of two JVMs differ by a few microseconds at most.
+ * Within a JVM, the differences between two timestamps are exactly the ones of System.nanoTime().
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public final class WallClock {
+
+	// System.nanoTime() + OFFSET = nanoseconds since the epoch
+	private static final long OFFSET = calibrate();
+
+	private WallClock() {
+	}
+
+	/**
+	 * Return the current time.
+	 *
+	 * @return Nanoseconds since the epoch, monotonic.
+	 */
+	public static long nanoTime() {
+		return System.nanoTime() + OFFSET;
+	}
+
+	// wait for the wall clock to tick, so the millisecond just started
+	private static long calibrate() {
+		final long start = System.currentTimeMillis();
+		long millis;
+		long nanos;
+		do {
+			nanos = System.nanoTime();
+			millis = System.currentTimeMillis();
+		} while (millis == start);
+		return millis * 1_000_000 - nanos;
+	}
+
+}
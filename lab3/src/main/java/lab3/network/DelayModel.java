@@ -0,0 +1,44 @@
+package lab3.network;
+
+import com.typesafe.config.Config;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Model of the network delay between two actors, used to simulate a network that reorders messages.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public interface DelayModel {
+
+	/**
+	 * Compute the delay of a message sent between two actors.
+	 *
+	 * @param sender   ID of the sender actor.
+	 * @param receiver ID of the receiver actor.
+	 * @return Delay in milliseconds (0 to deliver immediately).
+	 */
+	long delay(int sender, int receiver);
+
+	/**
+	 * Create the delay model described by the given configuration (see "lab3.network" in reference.conf).
+	 *
+	 * @param config Network configuration.
+	 * @return Delay model.
+	 */
+	static DelayModel fromConfig(Config config) {
+		final String model = config.getString("delay");
+		switch (model) {
+			case "none":
+				return new NoDelay();
+			case "uniform":
+				return new UniformDelay(config.getDuration("uniform.max", TimeUnit.MILLISECONDS), config.getInt("uniform.late-percent"));
+			case "exponential":
+				return new ExponentialDelay(config.getDuration("exponential.mean", TimeUnit.MILLISECONDS));
+			case "link":
+				return LinkDelay.fromConfig(config.getConfig("link"));
+			default:
+				throw new IllegalArgumentException("Unknown delay model: " + model);
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package lab3.network;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Delay each message by a random time exponentially distributed with the given mean.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public class ExponentialDelay implements DelayModel {
+
+	private final double mean;
+
+	/**
+	 * Create a new exponential delay model.
+	 *
+	 * @param mean Mean delay in milliseconds.
+	 */
+	public ExponentialDelay(double mean) {
+		if (mean < 0) {
+			throw new IllegalArgumentException("The mean delay must be non negative");
+		}
+		this.mean = mean;
+	}
+
+	@Override
+	public long delay(int sender, int receiver) {
+		return Math.round(-mean * Math.log(1.0 - ThreadLocalRandom.current().nextDouble()));
+	}
+
+}
@@ -0,0 +1,74 @@
+package lab3.network;
+
+import com.typesafe.config.Config;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Faulty network: each message is dropped or delivered twice with the given probabilities.
+ * An actor uses its own injector, so the counters are not shared.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public class FaultInjector {
+
+	private final double drop;
+	private final double duplicate;
+
+	// injected faults
+	private long dropped;
+	private long duplicated;
+
+	/**
+	 * Create a new fault injector.
+	 *
+	 * @param drop      Probability that a message is lost.
+	 * @param duplicate Probability that a message (not lost) is delivered twice.
+	 */
+	public FaultInjector(double drop, double duplicate) {
+		if (drop < 0 || drop >= 1 || duplicate < 0 || duplicate > 1) {
+			throw new IllegalArgumentException("Invalid probabilities: drop " + drop + ", duplicate " + duplicate);
+		}
+		this.drop = drop;
+		this.duplicate = duplicate;
+	}
+
+	/**
+	 * Create the fault injector described by the given configuration (see "lab3.network.faults" in reference.conf).
+	 *
+	 * @param config Configuration of the faults.
+	 * @return Fault injector, null if the network is reliable.
+	 */
+	public static FaultInjector fromConfig(Config config) {
+		final double drop = config.getDouble("drop");
+		final double duplicate = config.getDouble("duplicate");
+		return drop > 0 || duplicate > 0 ? new FaultInjector(drop, duplicate) : null;
+	}
+
+	/**
+	 * Decide the fate of a message.
+	 *
+	 * @return Number of copies of the message to deliver: 0 (lost), 1 or 2 (duplicated).
+	 */
+	public int copies() {
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		if (drop > 0 && random.nextDouble() < drop) {
+			dropped++;
+			return 0;
+		}
+		if (duplicate > 0 && random.nextDouble() < duplicate) {
+			duplicated++;
+			return 2;
+		}
+		return 1;
+	}
+
+	public long dropped() {
+		return dropped;
+	}
+
+	public long duplicated() {
+		return duplicated;
+	}
+
+}
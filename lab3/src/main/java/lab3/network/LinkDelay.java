@@ -0,0 +1,61 @@
+package lab3.network;
+
+import com.typesafe.config.Config;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delay each message by a fixed time that depends only on the link (sender, receiver).
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public class LinkDelay implements DelayModel {
+
+	private final long defaultDelay;
+	private final Map<Long, Long> links;
+
+	/**
+	 * Create a new per-link delay model.
+	 *
+	 * @param defaultDelay Delay in milliseconds of the links without an explicit delay.
+	 */
+	public LinkDelay(long defaultDelay) {
+		this.defaultDelay = defaultDelay;
+		this.links = new HashMap<>();
+	}
+
+	/**
+	 * Set the delay of a link.
+	 *
+	 * @param sender   ID of the sender actor.
+	 * @param receiver ID of the receiver actor.
+	 * @param delay    Delay in milliseconds.
+	 * @return This model.
+	 */
+	public LinkDelay withLink(int sender, int receiver, long delay) {
+		links.put(key(sender, receiver), delay);
+		return this;
+	}
+
+	@Override
+	public long delay(int sender, int receiver) {
+		return links.getOrDefault(key(sender, receiver), defaultDelay);
+	}
+
+	private static long key(int sender, int receiver) {
+		return ((long) sender << 32) | (receiver & 0xFFFFFFFFL);
+	}
+
+	static LinkDelay fromConfig(Config config) {
+		final LinkDelay model = new LinkDelay(config.getDuration("default", TimeUnit.MILLISECONDS));
+		config.getConfigList("links").forEach(link -> model.withLink(
+			link.getInt("from"),
+			link.getInt("to"),
+			link.getDuration("delay", TimeUnit.MILLISECONDS)
+		));
+		return model;
+	}
+
+}
@@ -0,0 +1,15 @@
+package lab3.network;
+
+/**
+ * Deliver all messages immediately.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public class NoDelay implements DelayModel {
+
+	@Override
+	public long delay(int sender, int receiver) {
+		return 0;
+	}
+
+}
@@ -0,0 +1,51 @@
+package lab3.network;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Delay each message by a random time uniformly distributed in [0, max).
+ * Optionally, only a percentage of the messages is delayed (late) and the others are delivered immediately:
+ * a sender's next message then overtakes a late one, like in lab2 (see lab2.Main).
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public class UniformDelay implements DelayModel {
+
+	private final long max;
+	private final int latePercent;
+
+	/**
+	 * Create a new uniform delay model.
+	 *
+	 * @param max Maximum delay in milliseconds (excluded).
+	 */
+	public UniformDelay(long max) {
+		this(max, 100);
+	}
+
+	/**
+	 * Create a new uniform delay model that delays only some messages.
+	 *
+	 * @param max         Maximum delay in milliseconds (excluded).
+	 * @param latePercent Percentage of the messages delayed, the others are delivered immediately.
+	 */
+	public UniformDelay(long max, int latePercent) {
+		if (max < 0) {
+			throw new IllegalArgumentException("The maximum delay must be non negative");
+		}
+		if (latePercent < 0 || latePercent > 100) {
+			throw new IllegalArgumentException("The percentage of late messages must be in [0, 100]: " + latePercent);
+		}
+		this.max = max;
+		this.latePercent = latePercent;
+	}
+
+	@Override
+	public long delay(int sender, int receiver) {
+		if (max == 0 || (latePercent < 100 && ThreadLocalRandom.current().nextInt(100) >= latePercent)) {
+			return 0;
+		}
+		return ThreadLocalRandom.current().nextLong(max);
+	}
+
+}
@@ -0,0 +1,80 @@
+package lab3.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File with the last checkpoint of a write-ahead log.
+ * A new checkpoint is written to a temporary file, forced to disk and then renamed over the previous one,
+ * so the file always contains a complete checkpoint.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public final class CheckpointFile {
+
+	private final Path file;
+	private final Path temporary;
+
+	/**
+	 * Create the checkpoint file in the given directory (the file is written only by {@link #write(byte[])}).
+	 *
+	 * @param directory Directory of the file.
+	 */
+	public CheckpointFile(Path directory) {
+		this.file = directory.resolve("checkpoint");
+		this.temporary = directory.resolve("checkpoint.tmp");
+	}
+
+	/**
+	 * Replace the checkpoint.
+	 *
+	 * @param data Content of the new checkpoint.
+	 * @throws IOException If the checkpoint cannot be written.
+	 */
+	public void write(byte[] data) throws IOException {
+		try (FileChannel channel = FileChannel.open(
+			temporary,
+			StandardOpenOption.CREATE,
+			StandardOpenOption.TRUNCATE_EXISTING,
+			StandardOpenOption.WRITE
+		)) {
+			final ByteBuffer buffer = ByteBuffer.wrap(data);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(true);
+		}
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Read the last checkpoint.
+	 *
+	 * @return Content of the checkpoint, null if there is none.
+	 * @throws IOException If the checkpoint cannot be read.
+	 */
+	public byte[] read() throws IOException {
+		try {
+			return Files.readAllBytes(file);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Delete the checkpoint, if any.
+	 *
+	 * @throws IOException If the checkpoint cannot be deleted.
+	 */
+	public void delete() throws IOException {
+		Files.deleteIfExists(file);
+		Files.deleteIfExists(temporary);
+	}
+
+}
@@ -0,0 +1,298 @@
+package lab3.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log on memory-mapped files.
+ * <p>
+ * The log is split in segments of fixed size, named after the position of their first byte, and each segment
+ * is mapped in memory: appending a record is a copy into the page cache, and {@link #sync()} forces the records
+ * appended so far to disk, so the callers can commit many records with one sync (group commit).
+ * Each record is [length of type & payload (4 bytes)][CRC32 of type & payload (4 bytes)][type (1 byte)][payload]
+ * and never spans two segments: a length of 0 marks the end of the records of a segment.
+ * <p>
+ * When the log is opened, it ends at the first incomplete or corrupted record (a write torn by a crash),
+ * which is overwritten by the next append (the checksum rejects what may remain of it after the new records).
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public final class WriteAheadLog implements Closeable {
+
+	// names of the segments: segment-<position of the first byte>.wal
+	private static final String PREFIX = "segment-";
+	private static final String SUFFIX = ".wal";
+
+	// length, CRC32 & type
+	private static final int HEADER = 9;
+
+	// directory of the segments & size of each one
+	private final Path directory;
+	private final int segmentSize;
+
+	// current segment: position of its first byte & mapped file
+	private long base;
+	private MappedByteBuffer buffer;
+
+	// checksum of the records (reused)
+	private final CRC32 crc;
+
+	// records appended since the last sync
+	private int unsynced;
+
+	// statistics
+	private long appended;
+	private long syncs;
+
+	/**
+	 * Handler of the records read from the log.
+	 */
+	@FunctionalInterface
+	public interface RecordHandler {
+
+		/**
+		 * Handle a record.
+		 *
+		 * @param type    Type of the record.
+		 * @param payload Payload of the record.
+		 */
+		void handle(int type, byte[] payload);
+	}
+
+	/**
+	 * Open the log in the given directory, creating it if needed.
+	 *
+	 * @param directory   Directory of the segments.
+	 * @param segmentSize Size of each segment, in bytes.
+	 * @throws IOException If the segments cannot be created or mapped.
+	 */
+	public WriteAheadLog(Path directory, int segmentSize) throws IOException {
+		if (segmentSize < HEADER + 1) {
+			throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+		}
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.crc = new CRC32();
+		this.unsynced = 0;
+		this.appended = 0;
+		this.syncs = 0;
+		Files.createDirectories(directory);
+
+		// continue the last segment after its last valid record
+		final List<Long> segments = segments();
+		this.base = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+		this.buffer = map(base);
+		int end = 0;
+		while (readRecord(buffer, end, null)) {
+			end = buffer.position();
+		}
+		for (int i = end; i < Math.min(end + HEADER, buffer.limit()); i++) {
+			buffer.put(i, (byte) 0);
+		}
+		buffer.position(end);
+	}
+
+	/**
+	 * Append a record (in memory: it is on disk only after the next sync).
+	 *
+	 * @param type    Type of the record, from 0 to 255.
+	 * @param payload Payload of the record.
+	 * @return Position of the log after the record.
+	 * @throws IOException If a new segment cannot be created.
+	 */
+	public long append(int type, byte[] payload) throws IOException {
+		final int size = HEADER + payload.length;
+		if (size > segmentSize) {
+			throw new IllegalArgumentException("Record of " + size + " bytes larger than a segment");
+		}
+		if (buffer.remaining() < size) {
+			roll();
+		}
+		crc.reset();
+		crc.update(type);
+		crc.update(payload);
+		buffer.putInt(1 + payload.length);
+		buffer.putInt((int) crc.getValue());
+		buffer.put((byte) type);
+		buffer.put(payload);
+		unsynced++;
+		appended++;
+		return position();
+	}
+
+	/**
+	 * Force the records appended since the last sync to disk.
+	 */
+	public void sync() {
+		if (unsynced > 0) {
+			buffer.force();
+			unsynced = 0;
+			syncs++;
+		}
+	}
+
+	/**
+	 * Return the number of records appended since the last sync.
+	 *
+	 * @return Records not forced to disk yet.
+	 */
+	public int unsynced() {
+		return unsynced;
+	}
+
+	/**
+	 * Return the position after the last record.
+	 *
+	 * @return Position of the next record.
+	 */
+	public long position() {
+		return base + buffer.position();
+	}
+
+	/**
+	 * Read the records from the given position to the end of the log.
+	 *
+	 * @param from    Position of the first record (0 for the whole log).
+	 * @param handler Handler of the records, in the order in which they were appended.
+	 * @throws IOException If a segment cannot be mapped.
+	 */
+	public void replay(long from, RecordHandler handler) throws IOException {
+		for (long segment : segments()) {
+			if (segment + segmentSize <= from) {
+				continue;
+			}
+			final ByteBuffer records = segment == base ? buffer.duplicate() : map(segment);
+			int offset = (int) Math.max(0, from - segment);
+			while (readRecord(records, offset, handler)) {
+				offset = records.position();
+			}
+		}
+	}
+
+	/**
+	 * Delete the segments containing only records before the given position.
+	 *
+	 * @param position Position of the first record to keep.
+	 * @throws IOException If a segment cannot be deleted.
+	 */
+	public void truncate(long position) throws IOException {
+		for (long segment : segments()) {
+			if (segment + segmentSize <= position && segment != base) {
+				Files.deleteIfExists(file(segment));
+			}
+		}
+	}
+
+	/**
+	 * Delete all the records and start a new log from position 0.
+	 *
+	 * @throws IOException If the segments cannot be deleted or created.
+	 */
+	public void clear() throws IOException {
+		for (long segment : segments()) {
+			Files.deleteIfExists(file(segment));
+		}
+		base = 0;
+		buffer = map(base);
+		unsynced = 0;
+	}
+
+	/**
+	 * Return a summary of the activity of the log.
+	 *
+	 * @return Records appended & syncs.
+	 */
+	public String summary() {
+		return String.format(
+			"%d records, %d syncs (%.1f records per sync)",
+			appended,
+			syncs,
+			syncs > 0 ? (double) appended / syncs : 0.0
+		);
+	}
+
+	@Override
+	public void close() {
+		sync();
+	}
+
+	// continue the log in a new segment
+	private void roll() throws IOException {
+		sync();
+		base += segmentSize;
+		buffer = map(base);
+	}
+
+	// map a segment, creating it if needed (the mapping remains valid after the channel is closed)
+	private MappedByteBuffer map(long segment) throws IOException {
+		try (FileChannel channel = FileChannel.open(
+			file(segment),
+			StandardOpenOption.CREATE,
+			StandardOpenOption.READ,
+			StandardOpenOption.WRITE
+		)) {
+			return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+		}
+	}
+
+	/**
+	 * Read the record at the given offset of a segment and move the position of the buffer after it.
+	 *
+	 * @param records Mapped segment.
+	 * @param offset  Offset of the record.
+	 * @param handler Handler of the record, null to only check it.
+	 * @return True if a valid record was read, false at the end of the records of the segment.
+	 */
+	private boolean readRecord(ByteBuffer records, int offset, RecordHandler handler) {
+		if (offset + HEADER > records.limit()) {
+			return false;
+		}
+		records.position(offset);
+		final int length = records.getInt();
+		final int checksum = records.getInt();
+		if (length < 1 || length > records.remaining()) {
+			return false;
+		}
+		final int type = records.get() & 0xFF;
+		final byte[] payload = new byte[length - 1];
+		records.get(payload);
+		crc.reset();
+		crc.update(type);
+		crc.update(payload);
+		if ((int) crc.getValue() != checksum) {
+			return false;
+		}
+		if (handler != null) {
+			handler.handle(type, payload);
+		}
+		return true;
+	}
+
+	// positions of the first bytes of the segments, sorted
+	private List<Long> segments() throws IOException {
+		final List<Long> segments = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+			for (Path file : files) {
+				final String name = file.getFileName().toString();
+				segments.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+			}
+		}
+		segments.sort(null);
+		return segments;
+	}
+
+	private Path file(long segment) {
+		return directory.resolve(String.format("%s%020d%s", PREFIX, segment, SUFFIX));
+	}
+
+}
@@ -0,0 +1,131 @@
+package lab3.remote;
+
+import com.typesafe.config.Config;
+import lab3.metrics.Histogram;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Start every node of the cluster in its own JVM, print their output and summarize the summaries of the actors:
+ * the delivered messages, the order violations and the latency from the creation of the messages to their delivery
+ * on another node or on the same one (merged from the latencies of all the nodes).
+ * <p>
+ * Usage: Launcher [cluster file] (the default file is cluster.conf on the classpath).
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public class Launcher {
+
+	// line of the summary of an actor, for a topic (see VectorClockActor.postStop)
+	private static final Pattern TOPIC = Pattern.compile(
+		" -> topic (\\S+) \\[(OK|KO)\\]: (\\d+) delivered, last \\D*(\\d+) \\((\\d+) violations(?:, (\\d+) replies out of order)?\\)"
+	);
+
+	// entry point
+	public static void main(String[] args) throws Exception {
+		final String file = args.length > 0 ? new File(args[0]).getAbsolutePath() : null;
+		final Config cluster = Node.load(file);
+		final long duration = cluster.getDuration("lab3.cluster.duration", TimeUnit.MILLISECONDS);
+		final long timeout = duration
+			+ cluster.getDuration("lab3.cluster.timeout", TimeUnit.MILLISECONDS)
+			+ cluster.getDuration("lab3.cluster.connect-timeout", TimeUnit.MILLISECONDS)
+			+ TimeUnit.SECONDS.toMillis(30);
+
+		// start the nodes with the same classpath
+		final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		final String classpath = System.getProperty("java.class.path");
+		final Map<String, Process> processes = new LinkedHashMap<>();
+		final List<Thread> readers = new ArrayList<>();
+		final List<String> summaries = Collections.synchronizedList(new ArrayList<>());
+		final Histogram latencies = new Histogram();
+		for (Config node : cluster.getConfigList("lab3.cluster.nodes")) {
+			final String name = node.getString("name");
+			final List<String> command = new ArrayList<>(Arrays.asList(java, "-cp", classpath, Node.class.getName(), name));
+			if (file != null) {
+				command.add(file);
+			}
+			final Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+			processes.put(name, process);
+
+			// print the output of the node & collect the summaries
+			final Thread reader = new Thread(() -> {
+				try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+					String line;
+					while ((line = in.readLine()) != null) {
+						if (line.startsWith(Node.LATENCIES)) {
+							final Histogram received = Histogram.decode(line.substring(Node.LATENCIES.length()));
+							synchronized (latencies) {
+								latencies.add(received);
+							}
+							continue;
+						}
+						System.out.println("[" + name + "] " + line);
+						if (TOPIC.matcher(line).matches()) {
+							summaries.add(line);
+						}
+					}
+				} catch (IOException e) {
+					System.out.println("[" + name + "] " + e);
+				}
+			}, "reader-" + name);
+			reader.start();
+			readers.add(reader);
+		}
+
+		// wait for the nodes
+		final long deadline = System.currentTimeMillis() + timeout;
+		boolean failed = false;
+		for (Map.Entry<String, Process> node : processes.entrySet()) {
+			final long left = Math.max(0, deadline - System.currentTimeMillis());
+			if (!node.getValue().waitFor(left, TimeUnit.MILLISECONDS)) {
+				System.out.println(node.getKey() + ": still running, killed");
+				node.getValue().destroyForcibly();
+				failed = true;
+			} else if (node.getValue().exitValue() != 0) {
+				System.out.println(node.getKey() + ": exit value " + node.getValue().exitValue());
+				failed = true;
+			}
+		}
+		for (Thread reader : readers) {
+			reader.join();
+		}
+
+		// summarize: messages delivered by all the actors, latencies & longest chain of replies on each topic
+		long delivered = 0;
+		int violations = 0;
+		int reordered = 0;
+		final Map<String, Integer> replies = new TreeMap<>();
+		for (String line : summaries) {
+			final Matcher matcher = TOPIC.matcher(line);
+			if (matcher.matches()) {
+				delivered += Long.parseLong(matcher.group(3));
+				violations += Integer.parseInt(matcher.group(5));
+				reordered += matcher.group(6) != null ? Integer.parseInt(matcher.group(6)) : 0;
+				replies.merge(matcher.group(1), Integer.parseInt(matcher.group(4)), Math::max);
+			}
+		}
+		System.out.println("Cluster: " + processes.size() + " node(s), " + duration + " ms of chat");
+		System.out.println(" -> delivered: " + delivered + " messages (" + (delivered * 1000 / Math.max(1, duration)) + " per second)");
+		System.out.println(" -> order violations: " + violations + ", replies out of order: " + reordered);
+		System.out.println(String.format(
+			" -> latency from creation to delivery (us): p50=%d p99=%d p999=%d max=%d (%d messages)",
+			latencies.percentile(50),
+			latencies.percentile(99),
+			latencies.percentile(99.9),
+			latencies.max(),
+			latencies.count()
+		));
+		replies.forEach((topic, n) -> System.out.println(" -> topic " + topic + ": " + n + " replies"));
+		if (failed) {
+			System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,177 @@
+package lab3.remote;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import common.output.Output;
+import lab3.DispatcherProfile;
+import lab3.actors.TerminationDetector;
+import lab3.messages.StartMessage;
+import lab3.messages.StopMessage;
+import lab3.metrics.Histogram;
+import lab3.scenario.LoadChatter;
+import lab3.scenario.LoadListener;
+import lab3.scenario.ScenarioResults;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One JVM of a group split across several local JVMs (see cluster.conf).
+ * It creates its own actors, waits for the actors of the other nodes and then starts the chat.
+ * The actors reply immediately and measure the latency from the creation of each message to its delivery
+ * (the timestamps of the {@link lab3.metrics.WallClock} are comparable across the JVMs).
+ * <p>
+ * After the chat, the first node of the cluster detects its termination over the whole group and stops all the actors;
+ * each node terminates when all the actors are stopped (also the remote ones: no node leaves before the others got its news).
+ * The summaries of the actors are printed on the standard output, followed by the latencies of the node.
+ * <p>
+ * Usage: Node name [cluster file] (the default file is cluster.conf on the classpath).
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public class Node {
+
+	// name of the actor systems (the same on all the nodes)
+	static final String SYSTEM = "lab3";
+
+	// prefix of the line with the latencies of the node, read by the Launcher (see Histogram.encode)
+	static final String LATENCIES = "latency-histogram ";
+
+	// entry point
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			throw new IllegalArgumentException("Usage: Node name [cluster file]");
+		}
+		final String name = args[0];
+		final Config cluster = load(args.length > 1 ? args[1] : null);
+		final Config node = find(cluster, name);
+		final boolean coordinator = name.equals(cluster.getConfigList("lab3.cluster.nodes").get(0).getString("name"));
+
+		// create the actor system listening on the port of the node
+		final Config config = ConfigFactory
+			.parseString("akka.remote.netty.tcp.port = " + node.getInt("port"))
+			.withFallback(cluster);
+		final ActorSystem system = ActorSystem.create(SYSTEM, config);
+
+		// create my actors: they measure all the messages
+		final ScenarioResults results = new ScenarioResults();
+		final int rate = cluster.getInt("lab3.cluster.rate");
+		final long periodMicros = rate > 0 ? TimeUnit.SECONDS.toMicros(1) / rate : 0;
+		final Map<Integer, ActorRef> local = new HashMap<>();
+		for (Config actor : node.getConfigList("actors")) {
+			final int id = actor.getInt("id");
+			final Props props = actor.hasPath("topic")
+				? Props.create(LoadChatter.class, id, actor.getString("topic"), actor.hasPath("start") && actor.getBoolean("start"), periodMicros, 0L, results)
+				: Props.create(LoadListener.class, id, 0L, results);
+			local.put(id, system.actorOf(DispatcherProfile.apply(system, props), actorName(id)));
+		}
+
+		// wait for the actors of the other nodes
+		final Map<Integer, ActorRef> group = new HashMap<>(local);
+		final long deadline = System.currentTimeMillis() + cluster.getDuration("lab3.cluster.connect-timeout", TimeUnit.MILLISECONDS);
+		for (Config other : cluster.getConfigList("lab3.cluster.nodes")) {
+			if (!name.equals(other.getString("name"))) {
+				for (Config actor : other.getConfigList("actors")) {
+					final int id = actor.getInt("id");
+					group.put(id, resolve(system, actorPath(other.getInt("port"), id), deadline));
+				}
+			}
+		}
+		System.out.println(name + ": " + local.size() + " local actor(s), " + group.size() + " in the group");
+
+		// terminate when all the actors are stopped
+		system.actorOf(Props.create(Reaper.class, group.values()), "reaper");
+
+		// tell my actors the members of the group
+		final StartMessage start = new StartMessage(group);
+		local.values().forEach(actor -> actor.tell(start, null));
+
+		// chat for the given duration
+		Thread.sleep(cluster.getDuration("lab3.cluster.duration", TimeUnit.MILLISECONDS));
+
+		// ask my actors not to send messages anymore
+		final StopMessage stop = new StopMessage();
+		local.values().forEach(actor -> actor.tell(stop, null));
+
+		// the first node waits for the last messages of the whole group & stops all the actors
+		if (coordinator) {
+			final long timeout = cluster.getDuration("lab3.cluster.timeout", TimeUnit.MILLISECONDS);
+			system.actorOf(Props.create(TerminationDetector.class, group.values(), timeout, true), "termination");
+		}
+		Await.ready(system.whenTerminated(), Duration.Inf());
+		Output.flush();
+
+		// latencies of my actors, for the Launcher
+		final Histogram latencies = results.latencies();
+		System.out.println(name + ": latency (us) " + latencies);
+		System.out.println(LATENCIES + latencies.encode());
+	}
+
+	/**
+	 * Load the description of the cluster.
+	 *
+	 * @param file Path of the cluster file, null for cluster.conf on the classpath.
+	 * @return Configuration of the cluster, with the defaults of the application as fallback.
+	 */
+	static Config load(String file) {
+		final Config cluster = file != null
+			? ConfigFactory.parseFile(new File(file))
+			: ConfigFactory.parseResources("cluster.conf");
+		return ConfigFactory.load(cluster);
+	}
+
+	/**
+	 * Find the description of a node.
+	 *
+	 * @param cluster Configuration of the cluster.
+	 * @param name    Name of the node.
+	 * @return Configuration of the node.
+	 */
+	static Config find(Config cluster, String name) {
+		for (Config node : cluster.getConfigList("lab3.cluster.nodes")) {
+			if (name.equals(node.getString("name"))) {
+				return node;
+			}
+		}
+		throw new IllegalArgumentException("Unknown node: " + name);
+	}
+
+	private static String actorName(int id) {
+		return "actor_" + id;
+	}
+
+	private static String actorPath(int port, int id) {
+		return "akka.tcp://" + SYSTEM + "@127.0.0.1:" + port + "/user/" + actorName(id);
+	}
+
+	/**
+	 * Resolve a remote actor, retrying until the deadline (the other node may not be up yet).
+	 *
+	 * @param system   Actor system.
+	 * @param path     Path of the remote actor.
+	 * @param deadline Time when to give up, in milliseconds.
+	 * @return Reference to the remote actor.
+	 */
+	private static ActorRef resolve(ActorSystem system, String path, long deadline) throws Exception {
+		final FiniteDuration timeout = Duration.create(1, TimeUnit.SECONDS);
+		while (true) {
+			try {
+				return Await.result(system.actorSelection(path).resolveOne(timeout), timeout);
+			} catch (Exception e) {
+				if (System.currentTimeMillis() > deadline) {
+					throw new IllegalStateException("Cannot reach " + path, e);
+				}
+				Thread.sleep(200);
+			}
+		}
+	}
+
+}
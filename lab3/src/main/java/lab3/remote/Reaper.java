@@ -0,0 +1,43 @@
+package lab3.remote;
+
+import akka.actor.ActorRef;
+import akka.actor.Terminated;
+import akka.actor.UntypedActor;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Terminate the actor system of a node once all the given actors (local or remote) are stopped.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public class Reaper extends UntypedActor {
+
+	// actors still alive
+	private final Set<ActorRef> watched;
+
+	/**
+	 * Create a new reaper.
+	 *
+	 * @param actors Actors to wait for.
+	 */
+	public Reaper(Collection<ActorRef> actors) {
+		this.watched = new HashSet<>(actors);
+		this.watched.forEach(actor -> getContext().watch(actor));
+	}
+
+	@Override
+	public void onReceive(Object message) {
+		if (message instanceof Terminated) {
+			watched.remove(((Terminated) message).getActor());
+			if (watched.isEmpty()) {
+				getContext().system().terminate();
+			}
+		} else {
+			unhandled(message);
+		}
+	}
+
+}
@@ -0,0 +1,21 @@
+package lab3.scenario;
+
+import com.typesafe.config.Config;
+
+/**
+ * Run the same scenario once for each dispatcher profile listed in "lab3.benchmark.profiles"
+ * and compare the throughput and the latency of the causal delivery.
+ * <p>
+ * Usage: DispatcherBenchmark [scenario file] (the default file is scenario.conf on the classpath).
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public class DispatcherBenchmark {
+
+	// entry point
+	public static void main(String[] args) throws Exception {
+		final Config base = ScenarioRunner.load(args.length > 0 ? args[0] : null);
+		ScenarioComparison.compare(base, "lab3.dispatcher", base.getStringList("lab3.benchmark.profiles"));
+	}
+
+}
@@ -0,0 +1,105 @@
+package lab3.scenario;
+
+import lab3.messages.ChatMessage;
+import lab3.messages.StopMessage;
+import lab3.metrics.Histogram;
+import lab3.metrics.WallClock;
+import lab3.vectorclock.VectorClockActor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Actor of a scenario: it measures the latency of the delivered messages, from their creation to their causal delivery,
+ * and counts the messages it sends. The results are published when the actor stops.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+abstract class LoadActor extends VectorClockActor {
+
+	// when the measurement starts (WallClock.nanoTime())
+	private final long measureFrom;
+
+	// where to publish the results
+	private final ScenarioResults results;
+	private final String role;
+
+	// measurement
+	private final Histogram latencies;
+	private long sent;
+	private boolean stopped;
+
+	/**
+	 * Create a new actor for a scenario.
+	 *
+	 * @param id          This actor identifier (used for the vector clock)
+	 * @param measureFrom When the measurement starts, from WallClock.nanoTime() (the end of the warm up)
+	 * @param results     Where to publish the results
+	 * @param role        Role of the actor, for the report
+	 */
+	LoadActor(int id, long measureFrom, ScenarioResults results, String role) {
+		super(id);
+		this.measureFrom = measureFrom;
+		this.results = results;
+		this.role = role;
+		this.latencies = new Histogram();
+		this.sent = 0;
+		this.stopped = false;
+	}
+
+	@Override
+	protected final void onChatMessage(ChatMessage message) {
+
+		// my messages are delivered when sent
+		if (message.sender() != id() && message.timestamp() >= measureFrom) {
+			latencies.record(TimeUnit.NANOSECONDS.toMicros(WallClock.nanoTime() - message.timestamp()));
+		}
+		onDelivered(message);
+	}
+
+	@Override
+	protected final void onStopMessage(StopMessage message) {
+		stopped = true;
+		onStop();
+	}
+
+	@Override
+	public void postStop() {
+		super.postStop();
+		results.publish(id(), role, sent, latencies, deliveryStats(), repairStats());
+	}
+
+	/**
+	 * Send a new ChatMessage, counting it if the measurement is in progress.
+	 *
+	 * @param topic   Topic of the ChatMessage.
+	 * @param replies Current number of replies of the ChatMessage.
+	 */
+	protected final void send(String topic, int replies) {
+		sendChatMessage(topic, replies);
+		if (!stopped && WallClock.nanoTime() >= measureFrom) {
+			sent++;
+		}
+	}
+
+	/**
+	 * Check if the actor has been asked to stop sending messages.
+	 *
+	 * @return True after the StopMessage.
+	 */
+	protected final boolean stopped() {
+		return stopped;
+	}
+
+	/**
+	 * A new ChatMessage has been delivered.
+	 *
+	 * @param message ChatMessage.
+	 */
+	protected abstract void onDelivered(ChatMessage message);
+
+	/**
+	 * The actor has been asked to stop sending messages.
+	 */
+	protected abstract void onStop();
+
+}
@@ -0,0 +1,121 @@
+package lab3.scenario;
+
+import akka.actor.Cancellable;
+import lab3.messages.ChatMessage;
+import lab3.messages.TopicRegistry;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Actor of a scenario that replies to the messages on its topic, at most at a given rate.
+ * <p>
+ * When a message of another actor arrives, it replies to the highest number of replies seen so far,
+ * immediately or at the next tick of its rate: the messages that arrive in the meantime get a single reply.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public class LoadChatter extends LoadActor {
+
+	// periodic message to myself
+	private enum Tick {
+		REPLY
+	}
+
+	// initialization parameters
+	private final String topic;
+	private final int topicId;
+	private final boolean startDiscussion;
+	private final long periodMicros;
+
+	// highest number of replies received and sent on the topic
+	private int received;
+	private int replied;
+	private Cancellable timer;
+
+	/**
+	 * Create a new LoadChatter actor.
+	 *
+	 * @param id              This actor identifier (used for the vector clock)
+	 * @param topic           Topic to which to reply to
+	 * @param startDiscussion Send the first message on the topic
+	 * @param periodMicros    Minimum time between two messages, in microseconds (0 to reply immediately)
+	 * @param measureFrom     When the measurement starts, from WallClock.nanoTime() (the end of the warm up)
+	 * @param results         Where to publish the results
+	 */
+	public LoadChatter(int id, String topic, boolean startDiscussion, long periodMicros, long measureFrom, ScenarioResults results) {
+		super(id, measureFrom, results, "chatter");
+		this.topic = topic;
+		this.topicId = TopicRegistry.id(topic);
+		this.startDiscussion = startDiscussion;
+		this.periodMicros = periodMicros;
+		this.received = -1;
+		this.replied = 0;
+	}
+
+	@Override
+	protected void onStart() {
+		if (startDiscussion) {
+			send(topic, 0);
+			replied = 1;
+		}
+		if (periodMicros > 0) {
+			final FiniteDuration period = Duration.create(periodMicros, TimeUnit.MICROSECONDS);
+			timer = getContext().system().scheduler().schedule(
+				period,
+				period,
+				getSelf(),
+				Tick.REPLY,
+				getContext().dispatcher(),
+				getSelf()
+			);
+		}
+	}
+
+	@Override
+	protected void onDelivered(ChatMessage message) {
+		if (topicId == message.topicId() && message.sender() != id()) {
+			received = Math.max(received, message.replies());
+			if (periodMicros == 0) {
+				reply();
+			}
+		}
+	}
+
+	@Override
+	protected void onMessage(Object message) {
+		if (message == Tick.REPLY) {
+			reply();
+		} else {
+			super.onMessage(message);
+		}
+	}
+
+	@Override
+	protected void onStop() {
+		cancelTimer();
+	}
+
+	@Override
+	public void postStop() {
+		cancelTimer();
+		super.postStop();
+	}
+
+	// reply to the highest message received, if not already done
+	private void reply() {
+		if (!stopped() && received >= replied) {
+			send(topic, received);
+			replied = received + 1;
+		}
+	}
+
+	private void cancelTimer() {
+		if (timer != null) {
+			timer.cancel();
+			timer = null;
+		}
+	}
+
+}
@@ -0,0 +1,35 @@
+package lab3.scenario;
+
+import lab3.messages.ChatMessage;
+
+/**
+ * Actor of a scenario that only receives messages.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public class LoadListener extends LoadActor {
+
+	/**
+	 * Create a new LoadListener actor.
+	 *
+	 * @param id          This actor identifier (used for the vector clock)
+	 * @param measureFrom When the measurement starts, from WallClock.nanoTime() (the end of the warm up)
+	 * @param results     Where to publish the results
+	 */
+	public LoadListener(int id, long measureFrom, ScenarioResults results) {
+		super(id, measureFrom, results, "listener");
+	}
+
+	@Override
+	protected void onStart() {
+	}
+
+	@Override
+	protected void onDelivered(ChatMessage message) {
+	}
+
+	@Override
+	protected void onStop() {
+	}
+
+}
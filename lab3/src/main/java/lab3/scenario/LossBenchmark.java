@@ -0,0 +1,73 @@
+package lab3.scenario;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import lab3.metrics.Histogram;
+import lab3.metrics.RepairStats;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Run the same scenario with the reliable multicast once for each loss rate listed in "lab3.benchmark.loss-rates"
+ * and compare the throughput, the latency of the delivery, how long the lost messages took to be recovered
+ * and the overhead of the repair: NACKs, retransmissions and heartbeats, over the ChatMessages sent to each receiver.
+ * <p>
+ * Usage: LossBenchmark [scenario file] (the default file is scenario.conf on the classpath).
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public class LossBenchmark {
+
+	// entry point
+	public static void main(String[] args) throws Exception {
+		final Config base = ConfigFactory
+			.parseString("lab3.reliability.enabled = on")
+			.withFallback(ScenarioRunner.load(args.length > 0 ? args[0] : null));
+		final long duration = base.getDuration("lab3.scenario.duration", TimeUnit.MILLISECONDS);
+
+		System.out.println(String.format(
+			"%-6s %9s %11s %9s %9s %9s %9s %9s %7s %13s %10s",
+			"loss", "sent/s", "delivered/s", "p50 us", "p99 us", "recovered", "rec p50", "rec p99", "nacks", "retransmitted", "overhead %"
+		));
+		for (String rate : base.getStringList("lab3.benchmark.loss-rates")) {
+			final Config config = ConfigFactory.parseString("lab3.network.faults.drop = " + rate).withFallback(base);
+			final ScenarioResults results = ScenarioRunner.run(config);
+
+			// merge the results of all the actors
+			long sent = 0;
+			long copies = 0;
+			long nacks = 0;
+			long retransmitted = 0;
+			long heartbeats = 0;
+			final Histogram latencies = new Histogram();
+			final Histogram recovery = new Histogram();
+			for (ScenarioResults.Result result : results.results().values()) {
+				sent += result.sent;
+				latencies.add(result.latencies);
+				final RepairStats repair = result.repair;
+				if (repair != null) {
+					copies += repair.sent();
+					nacks += repair.nacks();
+					retransmitted += repair.retransmitted();
+					heartbeats += repair.heartbeats();
+					recovery.add(repair.recovery());
+				}
+			}
+			System.out.println(String.format(
+				"%-6s %9.1f %11.1f %9d %9d %9d %9d %9d %7d %13d %10s",
+				rate,
+				sent * 1000.0 / duration,
+				latencies.count() * 1000.0 / duration,
+				latencies.percentile(50),
+				latencies.percentile(99),
+				recovery.count(),
+				recovery.percentile(50),
+				recovery.percentile(99),
+				nacks,
+				retransmitted,
+				copies > 0 ? String.format("%.1f", (nacks + retransmitted + heartbeats) * 100.0 / copies) : "-"
+			));
+		}
+	}
+
+}
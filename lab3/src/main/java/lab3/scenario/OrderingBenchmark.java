@@ -0,0 +1,21 @@
+package lab3.scenario;
+
+import com.typesafe.config.Config;
+
+/**
+ * Run the same scenario once for each ordering listed in "lab3.benchmark.orderings" (causal, sequencer, lamport)
+ * and compare the throughput and the latency of the delivery.
+ * <p>
+ * Usage: OrderingBenchmark [scenario file] (the default file is scenario.conf on the classpath).
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public class OrderingBenchmark {
+
+	// entry point
+	public static void main(String[] args) throws Exception {
+		final Config base = ScenarioRunner.load(args.length > 0 ? args[0] : null);
+		ScenarioComparison.compare(base, "lab3.ordering", base.getStringList("lab3.benchmark.orderings"));
+	}
+
+}
@@ -0,0 +1,26 @@
+package lab3.scenario;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+/**
+ * Run the same scenario once for each number of entries of the plausible clocks
+ * listed in "lab3.benchmark.plausible-entries" (0 for exact vector clocks)
+ * and compare the throughput, the latency of the delivery and the messages that waited in the delivery buffers.
+ * The messages that wait more than with exact vector clocks are the ones blocked by false dependencies.
+ * <p>
+ * Usage: PlausibleClockBenchmark [scenario file] (the default file is scenario.conf on the classpath).
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public class PlausibleClockBenchmark {
+
+	// entry point
+	public static void main(String[] args) throws Exception {
+		final Config base = ConfigFactory
+			.parseString("lab3.metrics { enabled = on, jmx = off }")
+			.withFallback(ScenarioRunner.load(args.length > 0 ? args[0] : null));
+		ScenarioComparison.compare(base, "lab3.vector-clock.plausible.entries", base.getStringList("lab3.benchmark.plausible-entries"));
+	}
+
+}
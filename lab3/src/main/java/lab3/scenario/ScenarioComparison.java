@@ -0,0 +1,67 @@
+package lab3.scenario;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import lab3.metrics.Histogram;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Run the same scenario once for each value of a setting and print a line with the throughput
+ * and the latency of the delivery for each one.
+ * With "lab3.metrics.enabled", it also prints the percentage of messages that waited in the delivery buffers.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+final class ScenarioComparison {
+
+	private ScenarioComparison() {
+	}
+
+	/**
+	 * Run the scenario for each value of a setting.
+	 *
+	 * @param base    Configuration of the scenario.
+	 * @param setting Path of the setting to change.
+	 * @param values  Values of the setting to compare.
+	 */
+	static void compare(Config base, String setting, List<String> values) throws Exception {
+		final long duration = base.getDuration("lab3.scenario.duration", TimeUnit.MILLISECONDS);
+
+		System.out.println(String.format(
+			"%-15s %9s %11s %9s %9s %9s %9s %9s",
+			setting, "sent/s", "delivered/s", "p50 us", "p99 us", "p999 us", "max us", "waited %"
+		));
+		for (String value : values) {
+			final Config config = ConfigFactory.parseString(setting + " = \"" + value + "\"").withFallback(base);
+			final ScenarioResults results = ScenarioRunner.run(config);
+
+			// merge the results of all the actors
+			long sent = 0;
+			long delivered = 0;
+			long waited = 0;
+			final Histogram latencies = new Histogram();
+			for (ScenarioResults.Result result : results.results().values()) {
+				sent += result.sent;
+				latencies.add(result.latencies);
+				if (result.stats != null) {
+					delivered += result.stats.delivered();
+					waited += result.stats.waited();
+				}
+			}
+			System.out.println(String.format(
+				"%-15s %9.1f %11.1f %9d %9d %9d %9d %9s",
+				value,
+				sent * 1000.0 / duration,
+				latencies.count() * 1000.0 / duration,
+				latencies.percentile(50),
+				latencies.percentile(99),
+				latencies.percentile(99.9),
+				latencies.max(),
+				delivered > 0 ? String.format("%.1f", waited * 100.0 / delivered) : "-"
+			));
+		}
+	}
+
+}
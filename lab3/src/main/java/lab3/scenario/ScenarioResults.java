@@ -0,0 +1,80 @@
+package lab3.scenario;
+
+import lab3.metrics.DeliveryStats;
+import lab3.metrics.Histogram;
+import lab3.metrics.RepairStats;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Results of the actors of a scenario, published by each actor when it stops.
+ * The actors and the runner live in the same JVM, so they share this object.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public final class ScenarioResults {
+
+	// results by actor ID
+	private final Map<Integer, Result> results;
+
+	/**
+	 * Create an empty set of results, shared by the actors of a JVM (also used by the nodes of lab3.remote).
+	 */
+	public ScenarioResults() {
+		this.results = new ConcurrentSkipListMap<>();
+	}
+
+	/**
+	 * Publish the results of an actor.
+	 *
+	 * @param id        ID of the actor.
+	 * @param role      Role of the actor (chatter or listener).
+	 * @param sent      Number of messages sent during the measurement.
+	 * @param latencies Latencies of the messages delivered during the measurement, in microseconds.
+	 * @param stats     Metrics of the delivery, null if "lab3.metrics.enabled" is off.
+	 * @param repair    Faults & work of the reliable multicast, null on a reliable network without "lab3.reliability".
+	 */
+	void publish(int id, String role, long sent, Histogram latencies, DeliveryStats stats, RepairStats repair) {
+		results.put(id, new Result(role, sent, latencies, stats, repair));
+	}
+
+	/**
+	 * Return the results, by actor ID.
+	 *
+	 * @return Results of the actors that stopped.
+	 */
+	Map<Integer, Result> results() {
+		return results;
+	}
+
+	/**
+	 * Merge the latencies of all the actors.
+	 *
+	 * @return Latencies of the messages delivered by the actors that stopped, in microseconds.
+	 */
+	public Histogram latencies() {
+		final Histogram latencies = new Histogram();
+		results.values().forEach(result -> latencies.add(result.latencies));
+		return latencies;
+	}
+
+	// results of an actor
+	static final class Result {
+
+		final String role;
+		final long sent;
+		final Histogram latencies;
+		final DeliveryStats stats;
+		final RepairStats repair;
+
+		private Result(String role, long sent, Histogram latencies, DeliveryStats stats, RepairStats repair) {
+			this.role = role;
+			this.sent = sent;
+			this.latencies = latencies;
+			this.stats = stats;
+			this.repair = repair;
+		}
+	}
+
+}
@@ -0,0 +1,154 @@
+package lab3.scenario;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import common.output.Output;
+import lab3.DispatcherProfile;
+import lab3.actors.TerminationDetector;
+import lab3.messages.StartMessage;
+import lab3.messages.StopMessage;
+import lab3.metrics.Histogram;
+import lab3.metrics.WallClock;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Run a load test described by a configuration file and report the send throughput
+ * and the latency from the creation of the messages to their causal delivery (p50, p99, p999), for each actor and in total.
+ * <p>
+ * Usage: ScenarioRunner [scenario file] (the default file is scenario.conf on the classpath).
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public class ScenarioRunner {
+
+	// entry point
+	public static void main(String[] args) throws Exception {
+		final Config config = load(args.length > 0 ? args[0] : null);
+		final Config scenario = config.getConfig("lab3.scenario");
+		final long duration = scenario.getDuration("duration", TimeUnit.MILLISECONDS);
+		final ScenarioResults results = run(config);
+
+		// report
+		System.out.println(String.format(
+			"Scenario: %d chatters, %d listeners, %d topics, %d messages/s per chatter, %d ms (after %d ms of warm up), dispatcher %s, %s ordering",
+			scenario.getInt("chatters"),
+			scenario.getInt("listeners"),
+			scenario.getStringList("topics").size(),
+			scenario.getInt("rate"),
+			duration,
+			scenario.getDuration("warm-up", TimeUnit.MILLISECONDS),
+			config.getString("lab3.dispatcher"),
+			config.getString("lab3.ordering")
+		));
+		System.out.println(String.format(
+			"%-8s %-9s %9s %9s %10s %9s %9s %9s %9s",
+			"actor", "role", "sent", "sent/s", "delivered", "p50 us", "p99 us", "p999 us", "max us"
+		));
+		long sent = 0;
+		final Histogram latencies = new Histogram();
+		for (Map.Entry<Integer, ScenarioResults.Result> entry : results.results().entrySet()) {
+			final ScenarioResults.Result result = entry.getValue();
+			sent += result.sent;
+			latencies.add(result.latencies);
+			if (scenario.getBoolean("per-actor")) {
+				System.out.println(line(String.valueOf(entry.getKey()), result.role, result.sent, duration, result.latencies));
+			}
+		}
+		System.out.println(line("total", results.results().size() + " actors", sent, duration, latencies));
+	}
+
+	/**
+	 * Load the description of a scenario.
+	 *
+	 * @param file Path of the scenario file, null for scenario.conf on the classpath.
+	 * @return Configuration of the scenario, with the defaults of the application as fallback.
+	 */
+	static Config load(String file) {
+		return ConfigFactory.load(file != null
+			? ConfigFactory.parseFile(new File(file))
+			: ConfigFactory.parseResources("scenario.conf"));
+	}
+
+	/**
+	 * Run a scenario in a new actor system, using the dispatcher selected by "lab3.dispatcher".
+	 * It returns after the actor system is terminated.
+	 *
+	 * @param config Configuration of the scenario and of the actor system.
+	 * @return Results of the actors.
+	 */
+	static ScenarioResults run(Config config) throws Exception {
+		final Config scenario = config.getConfig("lab3.scenario");
+		final int chatters = scenario.getInt("chatters");
+		final int listeners = scenario.getInt("listeners");
+		final List<String> topics = scenario.getStringList("topics");
+		final int initiators = scenario.getInt("initiators");
+		final int rate = scenario.getInt("rate");
+		final long warmUp = scenario.getDuration("warm-up", TimeUnit.MILLISECONDS);
+		final long duration = scenario.getDuration("duration", TimeUnit.MILLISECONDS);
+		final long drain = scenario.getDuration("drain", TimeUnit.MILLISECONDS);
+		if (topics.isEmpty() && chatters > 0) {
+			throw new IllegalArgumentException("The chatters need at least a topic");
+		}
+
+		// create the 'lab3' actor system
+		final ActorSystem system = ActorSystem.create("lab3", config);
+		final ScenarioResults results = new ScenarioResults();
+		final long periodMicros = rate > 0 ? TimeUnit.SECONDS.toMicros(1) / rate : 0;
+		final long measureFrom = WallClock.nanoTime() + TimeUnit.MILLISECONDS.toNanos(warmUp);
+
+		// create actors
+		final Map<Integer, ActorRef> group = new HashMap<>();
+		for (int id = 0; id < chatters; id++) {
+			final String topic = topics.get(id % topics.size());
+			final Props props = Props.create(LoadChatter.class, id, topic, id < initiators, periodMicros, measureFrom, results);
+			group.put(id, system.actorOf(DispatcherProfile.apply(system, props), "chatter_" + id));
+		}
+		for (int id = chatters; id < chatters + listeners; id++) {
+			final Props props = Props.create(LoadListener.class, id, measureFrom, results);
+			group.put(id, system.actorOf(DispatcherProfile.apply(system, props), "listener_" + id));
+		}
+
+		// tell everybody the members of the group
+		final StartMessage start = new StartMessage(group);
+		group.values().forEach(actor -> actor.tell(start, null));
+
+		// warm up & measure
+		Thread.sleep(warmUp + duration);
+
+		// ask everybody not to send messages anymore
+		final StopMessage stop = new StopMessage();
+		group.values().forEach(actor -> actor.tell(stop, null));
+
+		// wait for the last messages & terminate the system
+		system.actorOf(Props.create(TerminationDetector.class, group.values(), drain), "termination");
+		Await.ready(system.whenTerminated(), Duration.create(1, TimeUnit.MINUTES));
+		Output.flush();
+		return results;
+	}
+
+	private static String line(String actor, String role, long sent, long duration, Histogram latencies) {
+		return String.format(
+			"%-8s %-9s %9d %9.1f %10d %9d %9d %9d %9d",
+			actor,
+			role,
+			sent,
+			sent * 1000.0 / duration,
+			latencies.count(),
+			latencies.percentile(50),
+			latencies.percentile(99),
+			latencies.percentile(99.9),
+			latencies.max()
+		);
+	}
+
+}
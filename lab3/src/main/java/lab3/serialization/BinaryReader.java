@@ -0,0 +1,94 @@
+package lab3.serialization;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reader of the bytes written by a {@link BinaryWriter}.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+final class BinaryReader {
+
+	private final byte[] buffer;
+	private int position;
+
+	/**
+	 * Create a new reader.
+	 *
+	 * @param buffer Bytes to read (not copied).
+	 */
+	BinaryReader(byte[] buffer) {
+		this.buffer = buffer;
+		this.position = 0;
+	}
+
+	/**
+	 * Read a single byte.
+	 *
+	 * @return Byte read, as an unsigned value.
+	 */
+	int readByte() {
+		check(1);
+		return buffer[position++] & 0xFF;
+	}
+
+	/**
+	 * Read an integer written as a varint.
+	 *
+	 * @return Integer read.
+	 */
+	int readVarInt() {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			final int b = readByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Malformed varint at byte " + position);
+	}
+
+	/**
+	 * Read a long written as 8 bytes (big endian).
+	 *
+	 * @return Long read.
+	 */
+	long readLong() {
+		check(8);
+		long value = 0;
+		for (int i = 0; i < 8; i++) {
+			value = (value << 8) | (buffer[position++] & 0xFF);
+		}
+		return value;
+	}
+
+	/**
+	 * Read a string written as its length followed by its UTF-8 encoding.
+	 *
+	 * @return String read.
+	 */
+	String readString() {
+		final int length = readVarInt();
+		check(length);
+		final String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+		position += length;
+		return value;
+	}
+
+	/**
+	 * Check that all the bytes have been read.
+	 */
+	void end() {
+		if (position != buffer.length) {
+			throw new IllegalArgumentException((buffer.length - position) + " unexpected bytes at the end of the message");
+		}
+	}
+
+	private void check(int bytes) {
+		if (bytes < 0 || position + bytes > buffer.length) {
+			throw new IllegalArgumentException("Truncated message: " + bytes + " bytes needed at byte " + position);
+		}
+	}
+
+}
@@ -0,0 +1,95 @@
+package lab3.serialization;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer with the primitives of the binary format of the messages.
+ * Integers are written as unsigned varints (7 bits per byte, least significant group first),
+ * so the small values of replies, IDs and vector clock entries take a single byte.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+final class BinaryWriter {
+
+	private byte[] buffer;
+	private int position;
+
+	/**
+	 * Create a new writer.
+	 *
+	 * @param expected Expected size in bytes.
+	 */
+	BinaryWriter(int expected) {
+		this.buffer = new byte[Math.max(expected, 16)];
+		this.position = 0;
+	}
+
+	/**
+	 * Write a single byte.
+	 *
+	 * @param value Byte to write.
+	 */
+	void writeByte(int value) {
+		ensure(1);
+		buffer[position++] = (byte) value;
+	}
+
+	/**
+	 * Write a non negative integer as a varint (1 to 5 bytes).
+	 *
+	 * @param value Integer to write.
+	 */
+	void writeVarInt(int value) {
+		if (value < 0) {
+			throw new IllegalArgumentException("Negative value: " + value);
+		}
+		ensure(5);
+		while ((value & ~0x7F) != 0) {
+			buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[position++] = (byte) value;
+	}
+
+	/**
+	 * Write a long as 8 bytes (big endian).
+	 *
+	 * @param value Long to write.
+	 */
+	void writeLong(long value) {
+		ensure(8);
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			buffer[position++] = (byte) (value >>> shift);
+		}
+	}
+
+	/**
+	 * Write a string as its length in bytes followed by its UTF-8 encoding.
+	 *
+	 * @param value String to write.
+	 */
+	void writeString(String value) {
+		final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(bytes.length);
+		ensure(bytes.length);
+		System.arraycopy(bytes, 0, buffer, position, bytes.length);
+		position += bytes.length;
+	}
+
+	/**
+	 * Return the bytes written so far.
+	 *
+	 * @return Copy of the written bytes.
+	 */
+	byte[] toByteArray() {
+		return Arrays.copyOf(buffer, position);
+	}
+
+	private void ensure(int bytes) {
+		if (position + bytes > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+		}
+	}
+
+}
@@ -0,0 +1,362 @@
+package lab3.serialization;
+
+import akka.actor.ActorRef;
+import akka.actor.ExtendedActorSystem;
+import akka.serialization.Serialization;
+import akka.serialization.SerializerWithStringManifest;
+import lab3.messages.*;
+import lab3.vectorclock.VectorClock;
+
+import java.util.*;
+
+/**
+ * Akka serializer with a compact binary format for the messages exchanged by the lab3 actors,
+ * registered in reference.conf ("akka.actor.serializers" and "akka.actor.serialization-bindings").
+ * <p>
+ * All the integers are varints (except the timestamps, 8 bytes)
+ * and the vector clocks are written as (ID, value) pairs of their entries.
+ * The topics listed in "lab3.serialization.topics" are written as their index in the list,
+ * the other ones as strings.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public class MessageSerializer extends SerializerWithStringManifest {
+
+	// unique among the serializers of the actor system (Akka reserves 0 to 40)
+	private static final int IDENTIFIER = 3_000_003;
+
+	// manifests
+	private static final String CHAT = "chat";
+	private static final String COMPACT = "compact";
+	private static final String BATCH = "batch";
+	private static final String RELAY = "relay";
+	private static final String TOTAL = "total";
+	private static final String ACK = "ack";
+	private static final String REQUEST = "request";
+	private static final String START = "start";
+	private static final String STOP = "stop";
+
+	// tags of the messages in a batch
+	private static final int TAG_CHAT = 0;
+	private static final int TAG_COMPACT = 1;
+	private static final int TAG_RELAY = 2;
+
+	// actor system, to resolve the actor references
+	private final ExtendedActorSystem system;
+
+	// interned topics: topic <-> index + 1 (0 means the topic is written as a string)
+	private final Map<String, Integer> topicIds;
+	private final List<String> topics;
+
+	/**
+	 * Create the serializer (called by Akka).
+	 *
+	 * @param system Actor system.
+	 */
+	public MessageSerializer(ExtendedActorSystem system) {
+		this.system = system;
+		this.topics = Collections.unmodifiableList(new ArrayList<>(
+			system.settings().config().getStringList("lab3.serialization.topics")
+		));
+		this.topicIds = new HashMap<>();
+		for (int i = 0; i < topics.size(); i++) {
+			topicIds.put(topics.get(i), i + 1);
+		}
+	}
+
+	@Override
+	public int identifier() {
+		return IDENTIFIER;
+	}
+
+	@Override
+	public String manifest(Object message) {
+		if (message instanceof ChatMessage) {
+			return CHAT;
+		} else if (message instanceof CompactChatMessage) {
+			return COMPACT;
+		} else if (message instanceof BatchMessage) {
+			return BATCH;
+		} else if (message instanceof RelayMessage) {
+			return RELAY;
+		} else if (message instanceof TotalOrderMessage) {
+			return TOTAL;
+		} else if (message instanceof AckMessage) {
+			return ACK;
+		} else if (message instanceof OrderRequestMessage) {
+			return REQUEST;
+		} else if (message instanceof StartMessage) {
+			return START;
+		} else if (message instanceof StopMessage) {
+			return STOP;
+		}
+		throw new IllegalArgumentException("Cannot serialize " + message.getClass().getName());
+	}
+
+	@Override
+	public byte[] toBinary(Object message) {
+		final BinaryWriter out = new BinaryWriter(64);
+		if (message instanceof ChatMessage) {
+			writeChat(out, (ChatMessage) message);
+		} else if (message instanceof CompactChatMessage) {
+			writeCompact(out, (CompactChatMessage) message);
+		} else if (message instanceof BatchMessage) {
+			writeBatch(out, (BatchMessage) message);
+		} else if (message instanceof RelayMessage) {
+			writeRelay(out, (RelayMessage) message);
+		} else if (message instanceof TotalOrderMessage) {
+			writeTotal(out, (TotalOrderMessage) message);
+		} else if (message instanceof AckMessage) {
+			writeAck(out, (AckMessage) message);
+		} else if (message instanceof OrderRequestMessage) {
+			writeRequest(out, (OrderRequestMessage) message);
+		} else if (message instanceof StartMessage) {
+			writeStart(out, (StartMessage) message);
+		} else if (!(message instanceof StopMessage)) {
+			throw new IllegalArgumentException("Cannot serialize " + message.getClass().getName());
+		}
+		return out.toByteArray();
+	}
+
+	@Override
+	public Object fromBinary(byte[] bytes, String manifest) {
+		final BinaryReader in = new BinaryReader(bytes);
+		final Object message;
+		switch (manifest) {
+			case CHAT:
+				message = readChat(in);
+				break;
+			case COMPACT:
+				message = readCompact(in);
+				break;
+			case BATCH:
+				message = readBatch(in);
+				break;
+			case RELAY:
+				message = readRelay(in);
+				break;
+			case TOTAL:
+				message = readTotal(in);
+				break;
+			case ACK:
+				message = readAck(in);
+				break;
+			case REQUEST:
+				message = readRequest(in);
+				break;
+			case START:
+				message = readStart(in);
+				break;
+			case STOP:
+				message = new StopMessage();
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown manifest: " + manifest);
+		}
+		in.end();
+		return message;
+	}
+
+	// topic -> interned index, or 0 followed by the string
+	private void writeTopic(BinaryWriter out, String topic) {
+		final Integer topicId = topicIds.get(topic);
+		if (topicId != null) {
+			out.writeVarInt(topicId);
+		} else {
+			out.writeVarInt(0);
+			out.writeString(topic);
+		}
+	}
+
+	private String readTopic(BinaryReader in) {
+		final int topicId = in.readVarInt();
+		if (topicId == 0) {
+			return in.readString();
+		}
+		if (topicId > topics.size()) {
+			throw new IllegalArgumentException("Unknown topic: " + topicId);
+		}
+		return topics.get(topicId - 1);
+	}
+
+	// topic, replies, sender, timestamp, number of entries, (ID, value) pairs
+	private void writeChat(BinaryWriter out, ChatMessage message) {
+		writeTopic(out, message.topic());
+		out.writeVarInt(message.replies());
+		out.writeVarInt(message.sender());
+		out.writeLong(message.timestamp());
+		final VectorClock vc = message.vc();
+		out.writeVarInt(vc.size());
+		for (int slot = 0; slot < vc.capacity(); slot++) {
+			final int id = vc.idAt(slot);
+			if (id != VectorClock.NO_ID) {
+				out.writeVarInt(id);
+				out.writeVarInt(vc.valueAt(slot));
+			}
+		}
+	}
+
+	private ChatMessage readChat(BinaryReader in) {
+		final String topic = readTopic(in);
+		final int replies = in.readVarInt();
+		final int sender = in.readVarInt();
+		final long timestamp = in.readLong();
+		final int size = in.readVarInt();
+		final VectorClock vc = new VectorClock(size);
+		for (int i = 0; i < size; i++) {
+			final int id = in.readVarInt();
+			vc.set(id, in.readVarInt());
+		}
+		return new ChatMessage(topic, replies, sender, vc.freeze(), timestamp);
+	}
+
+	// topic, replies, sender, sequence number, timestamp, number of entries, (ID, value) pairs
+	private void writeCompact(BinaryWriter out, CompactChatMessage message) {
+		writeTopic(out, message.topic());
+		out.writeVarInt(message.replies());
+		out.writeVarInt(message.sender());
+		out.writeVarInt(message.seq());
+		out.writeLong(message.timestamp());
+		final int[] entries = message.entries();
+		final int[] values = message.values();
+		out.writeVarInt(entries.length);
+		for (int i = 0; i < entries.length; i++) {
+			out.writeVarInt(entries[i]);
+			out.writeVarInt(values[i]);
+		}
+	}
+
+	private CompactChatMessage readCompact(BinaryReader in) {
+		final String topic = readTopic(in);
+		final int replies = in.readVarInt();
+		final int sender = in.readVarInt();
+		final int seq = in.readVarInt();
+		final long timestamp = in.readLong();
+		final int size = in.readVarInt();
+		final int[] entries = new int[size];
+		final int[] values = new int[size];
+		for (int i = 0; i < size; i++) {
+			entries[i] = in.readVarInt();
+			values[i] = in.readVarInt();
+		}
+		return new CompactChatMessage(topic, replies, sender, seq, entries, values, timestamp);
+	}
+
+	// number of messages, (tag, message) pairs
+	private void writeBatch(BinaryWriter out, BatchMessage batch) {
+		out.writeVarInt(batch.messages().size());
+		for (Object message : batch.messages()) {
+			if (message instanceof ChatMessage) {
+				out.writeByte(TAG_CHAT);
+				writeChat(out, (ChatMessage) message);
+			} else if (message instanceof CompactChatMessage) {
+				out.writeByte(TAG_COMPACT);
+				writeCompact(out, (CompactChatMessage) message);
+			} else if (message instanceof RelayMessage) {
+				out.writeByte(TAG_RELAY);
+				writeRelay(out, (RelayMessage) message);
+			} else {
+				throw new IllegalArgumentException("Cannot serialize " + message.getClass().getName() + " in a batch");
+			}
+		}
+	}
+
+	private BatchMessage readBatch(BinaryReader in) {
+		final int size = in.readVarInt();
+		final List<Object> messages = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			final int tag = in.readByte();
+			switch (tag) {
+				case TAG_CHAT:
+					messages.add(readChat(in));
+					break;
+				case TAG_COMPACT:
+					messages.add(readCompact(in));
+					break;
+				case TAG_RELAY:
+					messages.add(readRelay(in));
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown tag in a batch: " + tag);
+			}
+		}
+		return new BatchMessage(messages);
+	}
+
+	// chat message, number of targets in the subtree, their IDs (only the subtree of the receiver is sent)
+	private void writeRelay(BinaryWriter out, RelayMessage message) {
+		writeChat(out, message.message());
+		out.writeVarInt(message.to() - message.from());
+		for (int i = message.from(); i < message.to(); i++) {
+			out.writeVarInt(message.targets()[i]);
+		}
+	}
+
+	private RelayMessage readRelay(BinaryReader in) {
+		final ChatMessage message = readChat(in);
+		final int[] targets = new int[in.readVarInt()];
+		for (int i = 0; i < targets.length; i++) {
+			targets[i] = in.readVarInt();
+		}
+		return new RelayMessage(message, targets, 0, targets.length);
+	}
+
+	// sender, sequence number, Lamport clock, chat message
+	private void writeTotal(BinaryWriter out, TotalOrderMessage message) {
+		out.writeVarInt(message.from());
+		out.writeVarInt(message.seq());
+		out.writeLong(message.clock());
+		writeChat(out, message.message());
+	}
+
+	private TotalOrderMessage readTotal(BinaryReader in) {
+		final int from = in.readVarInt();
+		final int seq = in.readVarInt();
+		final long clock = in.readLong();
+		return new TotalOrderMessage(from, seq, clock, readChat(in));
+	}
+
+	// sender, sequence number, Lamport clock
+	private void writeAck(BinaryWriter out, AckMessage ack) {
+		out.writeVarInt(ack.from());
+		out.writeVarInt(ack.seq());
+		out.writeLong(ack.clock());
+	}
+
+	private AckMessage readAck(BinaryReader in) {
+		final int from = in.readVarInt();
+		final int seq = in.readVarInt();
+		return new AckMessage(from, seq, in.readLong());
+	}
+
+	// sequence number, chat message
+	private void writeRequest(BinaryWriter out, OrderRequestMessage request) {
+		out.writeVarInt(request.seq());
+		writeChat(out, request.message());
+	}
+
+	private OrderRequestMessage readRequest(BinaryReader in) {
+		final int seq = in.readVarInt();
+		return new OrderRequestMessage(seq, readChat(in));
+	}
+
+	// number of members, (ID, actor path) pairs
+	private void writeStart(BinaryWriter out, StartMessage message) {
+		out.writeVarInt(message.group().size());
+		message.group().forEach((id, actor) -> {
+			out.writeVarInt(id);
+			out.writeString(Serialization.serializedActorPath(actor));
+		});
+	}
+
+	private StartMessage readStart(BinaryReader in) {
+		final int size = in.readVarInt();
+		final Map<Integer, ActorRef> group = new HashMap<>();
+		for (int i = 0; i < size; i++) {
+			final int id = in.readVarInt();
+			group.put(id, system.provider().resolveActorRef(in.readString()));
+		}
+		return new StartMessage(group);
+	}
+
+}
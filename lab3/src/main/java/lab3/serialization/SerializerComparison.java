@@ -0,0 +1,168 @@
+package lab3.serialization;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.Props;
+import akka.serialization.JavaSerializer;
+import akka.serialization.SerializationExtension;
+import akka.serialization.Serializer;
+import lab3.actors.Listener;
+import lab3.messages.*;
+import lab3.vectorclock.VectorClock;
+
+import java.util.*;
+
+/**
+ * Check that the messages survive a round trip through the {@link MessageSerializer} registered in the configuration,
+ * and compare its size and throughput with the Java serialization.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public class SerializerComparison {
+
+	// number of round trips for each message
+	private static final int ROUNDS = 100_000;
+
+	// entry point
+	public static void main(String[] args) {
+		final int members = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+
+		// create the 'lab3' actor system
+		final ActorSystem system = ActorSystem.create("lab3");
+		final JavaSerializer javaSerializer = new JavaSerializer((ExtendedActorSystem) system);
+
+		// sample messages for a group of the given size
+		final Map<String, Object> samples = new LinkedHashMap<>();
+		final VectorClock vc = new VectorClock();
+		final int[] entries = new int[members / 2];
+		final int[] values = new int[members / 2];
+		for (int i = 0; i < members; i++) {
+			vc.set(i, 100 + i * 7);
+		}
+		for (int i = 0; i < entries.length; i++) {
+			entries[i] = i * 2;
+			values[i] = vc.get(i * 2);
+		}
+		final ChatMessage chat = new ChatMessage("a", 42, 3, vc);
+		final CompactChatMessage compact = new CompactChatMessage("b", 42, 3, 17, entries, values, System.nanoTime());
+		final Map<Integer, ActorRef> group = new HashMap<>();
+		for (int i = 0; i < members; i++) {
+			group.put(i, system.actorOf(Props.create(Listener.class, i), "listener_" + i));
+		}
+		samples.put("chat", chat);
+		samples.put("chat (unknown topic)", new ChatMessage("some other topic", 42, 3, vc));
+		samples.put("compact", compact);
+		final List<Object> batch = new ArrayList<>();
+		for (int seq = 0; seq < 8; seq++) {
+			batch.add(new CompactChatMessage("c", 42 + seq, 3, seq, entries.clone(), values.clone(), System.nanoTime()));
+		}
+		samples.put("batch (8 compact)", new BatchMessage(batch));
+		final int[] targets = new int[members - 1];
+		for (int i = 0; i < targets.length; i++) {
+			targets[i] = i + 1;
+		}
+		samples.put("relay (half subtree)", new RelayMessage(chat, targets, 1, 1 + targets.length / 2));
+		samples.put("total order", new TotalOrderMessage(3, 1234, 98765, chat));
+		samples.put("ack", new AckMessage(3, 1235, 98766));
+		samples.put("order request", new OrderRequestMessage(77, chat));
+		samples.put("start", new StartMessage(group));
+		samples.put("stop", new StopMessage());
+
+		// round trip & comparison
+		System.out.println("Group of " + members + " members, " + ROUNDS + " round trips for each message");
+		samples.forEach((name, message) -> {
+			final Serializer serializer = SerializationExtension.get(system).findSerializerFor(message);
+			if (!(serializer instanceof MessageSerializer)) {
+				throw new IllegalStateException(name + ": serialized by " + serializer.getClass().getName());
+			}
+			final MessageSerializer binary = (MessageSerializer) serializer;
+			final String manifest = binary.manifest(message);
+
+			// round trip
+			final byte[] bytes = binary.toBinary(message);
+			final Object copy = binary.fromBinary(bytes, manifest);
+			if (!describe(message).equals(describe(copy))) {
+				throw new IllegalStateException(name + ": " + describe(message) + " != " + describe(copy));
+			}
+
+			// throughput (serialize + deserialize), after a warm up
+			for (int i = 0; i < ROUNDS; i++) {
+				binary.fromBinary(binary.toBinary(message), manifest);
+				javaSerializer.fromBinary(javaSerializer.toBinary(message));
+			}
+			final long binaryStart = System.nanoTime();
+			for (int i = 0; i < ROUNDS; i++) {
+				binary.fromBinary(binary.toBinary(message), manifest);
+			}
+			final long binaryTime = System.nanoTime() - binaryStart;
+			final byte[] javaBytes = javaSerializer.toBinary(message);
+			final long javaStart = System.nanoTime();
+			for (int i = 0; i < ROUNDS; i++) {
+				javaSerializer.fromBinary(javaSerializer.toBinary(message));
+			}
+			final long javaTime = System.nanoTime() - javaStart;
+
+			System.out.println(String.format(
+				"%-22s binary %5d B %8.0f ns/op | java %5d B %8.0f ns/op",
+				name,
+				bytes.length,
+				(double) binaryTime / ROUNDS,
+				javaBytes.length,
+				(double) javaTime / ROUNDS
+			));
+		});
+
+		// terminate the system
+		system.terminate();
+	}
+
+	/**
+	 * Describe the content of a message, to compare it with its copy.
+	 *
+	 * @param message Message.
+	 * @return Description of all the fields of the message.
+	 */
+	private static String describe(Object message) {
+		if (message instanceof ChatMessage) {
+			final ChatMessage chat = (ChatMessage) message;
+			return "chat " + chat.topic() + " " + chat.replies() + " " + chat.sender()
+				+ " " + chat.timestamp() + " " + sorted(chat.vc());
+		} else if (message instanceof CompactChatMessage) {
+			final CompactChatMessage compact = (CompactChatMessage) message;
+			return "compact " + compact.topic() + " " + compact.replies() + " " + compact.sender() + " " + compact.seq()
+				+ " " + compact.timestamp() + " " + Arrays.toString(compact.entries()) + " " + Arrays.toString(compact.values());
+		} else if (message instanceof BatchMessage) {
+			final StringBuilder builder = new StringBuilder("batch");
+			((BatchMessage) message).messages().forEach(m -> builder.append(" [").append(describe(m)).append("]"));
+			return builder.toString();
+		} else if (message instanceof RelayMessage) {
+			final RelayMessage relay = (RelayMessage) message;
+			return "relay " + describe(relay.message())
+				+ " " + Arrays.toString(Arrays.copyOfRange(relay.targets(), relay.from(), relay.to()));
+		} else if (message instanceof TotalOrderMessage) {
+			final TotalOrderMessage total = (TotalOrderMessage) message;
+			return "total " + total.from() + " " + total.seq() + " " + total.clock() + " " + describe(total.message());
+		} else if (message instanceof AckMessage) {
+			final AckMessage ack = (AckMessage) message;
+			return "ack " + ack.from() + " " + ack.seq() + " " + ack.clock();
+		} else if (message instanceof OrderRequestMessage) {
+			final OrderRequestMessage request = (OrderRequestMessage) message;
+			return "request " + request.seq() + " " + describe(request.message());
+		} else if (message instanceof StartMessage) {
+			return "start " + new TreeMap<>(((StartMessage) message).group());
+		}
+		return message.getClass().getSimpleName();
+	}
+
+	private static Map<Integer, Integer> sorted(VectorClock vc) {
+		final Map<Integer, Integer> entries = new TreeMap<>();
+		for (int slot = 0; slot < vc.capacity(); slot++) {
+			if (vc.idAt(slot) != VectorClock.NO_ID) {
+				entries.put(vc.idAt(slot), vc.valueAt(slot));
+			}
+		}
+		return entries;
+	}
+
+}
@@ -0,0 +1,182 @@
+package lab3.trace;
+
+import lab3.messages.ChatMessage;
+import lab3.vectorclock.VectorClock;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Trace of an actor, written by a {@link TraceWriter} and loaded in memory to be replayed.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public final class Trace {
+
+	private final int actor;
+	private final boolean topicScope;
+	private final int entries;
+	private final List<Integer> members;
+	private final List<TraceEvent> events;
+
+	private Trace(int actor, boolean topicScope, int entries, List<Integer> members, List<TraceEvent> events) {
+		this.actor = actor;
+		this.topicScope = topicScope;
+		this.entries = entries;
+		this.members = Collections.unmodifiableList(members);
+		this.events = Collections.unmodifiableList(events);
+	}
+
+	/**
+	 * Read a whole trace.
+	 * A trace truncated in the middle of a record (the actor did not close it) ends at the last complete record.
+	 *
+	 * @param file File of the trace.
+	 * @return Trace.
+	 * @throws IOException If the file cannot be read or it is not a trace.
+	 */
+	public static Trace read(Path file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+			if (in.readInt() != TraceWriter.MAGIC || in.readByte() != TraceWriter.VERSION) {
+				throw new IOException("Not a trace (or unknown version): " + file);
+			}
+			final int actor = readVarInt(in);
+			final boolean topicScope = in.readBoolean();
+			final int entries = readVarInt(in);
+			final List<Integer> members = new ArrayList<>();
+			final List<TraceEvent> events = new ArrayList<>();
+			final Map<Integer, String> topics = new HashMap<>();
+			long time = 0;
+			try {
+				int type;
+				while ((type = in.read()) >= 0) {
+					if (type == TraceWriter.TOPIC) {
+						final int id = readVarInt(in);
+						topics.put(id, in.readUTF());
+						continue;
+					}
+					time += readVarLong(in);
+					switch (type) {
+						case TraceWriter.GROUP:
+							final int size = readVarInt(in);
+							for (int i = 0; i < size; i++) {
+								members.add(readVarInt(in));
+							}
+							break;
+						case TraceEvent.SEND:
+							final int destination = readVarInt(in);
+							final int sender = readVarInt(in);
+							final String topic = topic(topics, readVarInt(in), file);
+							events.add(new TraceEvent(type, time, sender, destination, topic, readVarInt(in), null));
+							break;
+						case TraceEvent.RECEIVE:
+						case TraceEvent.STAMP:
+							final ChatMessage message = readMessage(in, topics, file);
+							events.add(new TraceEvent(
+								type,
+								time,
+								message.sender(),
+								actor,
+								message.topic(),
+								message.vc().get(message.sender()),
+								message
+							));
+							break;
+						default:
+							throw new IOException("Unknown record " + type + " in the trace " + file);
+					}
+				}
+			} catch (EOFException e) {
+				// incomplete last record -> ignore it
+			}
+			return new Trace(actor, topicScope, entries, members, events);
+		}
+	}
+
+	/**
+	 * Return the ID of the actor.
+	 *
+	 * @return ID of the actor.
+	 */
+	public int actor() {
+		return actor;
+	}
+
+	/**
+	 * Check if the actor had a vector clock for each topic.
+	 *
+	 * @return True for "topic" scope, false for "group".
+	 */
+	public boolean topicScope() {
+		return topicScope;
+	}
+
+	/**
+	 * Return the number of entries of the plausible clocks.
+	 *
+	 * @return Number of entries, 0 for exact vector clocks.
+	 */
+	public int entries() {
+		return entries;
+	}
+
+	/**
+	 * Return the members of the group.
+	 *
+	 * @return IDs of the members (empty if the actor never started).
+	 */
+	public List<Integer> members() {
+		return members;
+	}
+
+	/**
+	 * Return the events, in the order in which the actor handled them.
+	 *
+	 * @return Events.
+	 */
+	public List<TraceEvent> events() {
+		return events;
+	}
+
+	private static ChatMessage readMessage(DataInputStream in, Map<Integer, String> topics, Path file) throws IOException {
+		final String topic = topic(topics, readVarInt(in), file);
+		final int replies = readVarInt(in);
+		final int sender = readVarInt(in);
+		final int size = readVarInt(in);
+		final VectorClock vc = new VectorClock(size);
+		for (int i = 0; i < size; i++) {
+			vc.set(readVarInt(in), readVarInt(in));
+		}
+		return new ChatMessage(topic, replies, sender, vc.freeze());
+	}
+
+	private static String topic(Map<Integer, String> topics, int id, Path file) throws IOException {
+		final String topic = topics.get(id);
+		if (topic == null) {
+			throw new IOException("Undefined topic " + id + " in the trace " + file);
+		}
+		return topic;
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		return (int) readVarLong(in);
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			final int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+
+}
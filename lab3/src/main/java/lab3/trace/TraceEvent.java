@@ -0,0 +1,108 @@
+package lab3.trace;
+
+import lab3.messages.ChatMessage;
+
+/**
+ * Event of the trace of an actor, read by {@link Trace#read(java.nio.file.Path)}.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public final class TraceEvent {
+
+	/**
+	 * A ChatMessage was sent to a member (only its sender, topic & sequence number are recorded).
+	 */
+	public static final int SEND = 2;
+
+	/**
+	 * A ChatMessage was received, before it was buffered.
+	 */
+	public static final int RECEIVE = 3;
+
+	/**
+	 * The actor stamped a new ChatMessage and delivered it to itself.
+	 */
+	public static final int STAMP = 4;
+
+	private final int type;
+	private final long time;
+	private final int sender;
+	private final int destination;
+	private final String topic;
+	private final int seq;
+	private final ChatMessage message;
+
+	TraceEvent(int type, long time, int sender, int destination, String topic, int seq, ChatMessage message) {
+		this.type = type;
+		this.time = time;
+		this.sender = sender;
+		this.destination = destination;
+		this.topic = topic;
+		this.seq = seq;
+		this.message = message;
+	}
+
+	/**
+	 * Return the type of the event.
+	 *
+	 * @return SEND, RECEIVE or STAMP.
+	 */
+	public int type() {
+		return type;
+	}
+
+	/**
+	 * Return the time of the event.
+	 *
+	 * @return Microseconds since the actor was created.
+	 */
+	public long time() {
+		return time;
+	}
+
+	/**
+	 * Return the sender of the ChatMessage.
+	 *
+	 * @return ID of the sender.
+	 */
+	public int sender() {
+		return sender;
+	}
+
+	/**
+	 * Return the destination of the ChatMessage.
+	 *
+	 * @return ID of the destination (the actor of the trace for RECEIVE & STAMP).
+	 */
+	public int destination() {
+		return destination;
+	}
+
+	/**
+	 * Return the topic of the ChatMessage.
+	 *
+	 * @return Topic.
+	 */
+	public String topic() {
+		return topic;
+	}
+
+	/**
+	 * Return the entry of the sender in the vector clock of the ChatMessage.
+	 *
+	 * @return Sequence number of the ChatMessage for its sender.
+	 */
+	public int seq() {
+		return seq;
+	}
+
+	/**
+	 * Return the ChatMessage.
+	 *
+	 * @return ChatMessage, null for SEND.
+	 */
+	public ChatMessage message() {
+		return message;
+	}
+
+}
@@ -0,0 +1,208 @@
+package lab3.trace;
+
+import lab3.messages.ChatMessage;
+import lab3.vectorclock.VectorClock;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * Recorder of the trace of an actor: the ChatMessages it stamped, sent and received, in the order in which it handled them.
+ * <p>
+ * The trace is a compact binary file, written through a buffer by the thread of the actor.
+ * It starts with a header (magic number, version, ID of the actor, scope of the vector clocks, entries of plausible clocks),
+ * followed by the records: [type (1 byte)][microseconds since the previous record (varint)][content].
+ * Integers are written as varints and the name of each topic only once, in a TOPIC record before its first use.
+ * See {@link Trace#read(Path)} for the reader.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public final class TraceWriter implements Closeable {
+
+	// header
+	static final int MAGIC = 0x4C335452;
+	static final int VERSION = 1;
+
+	// types of the records (TOPIC defines the name of a topic, it is not an event)
+	static final int TOPIC = 0;
+	static final int GROUP = 1;
+
+	private final Path file;
+	private final DataOutputStream out;
+
+	// topics already defined in the trace (by ID, see TopicRegistry)
+	private final BitSet topics;
+
+	// time of the last record, in microseconds since the start
+	private final long start;
+	private long last;
+
+	// number of events recorded
+	private long events;
+
+	/**
+	 * Create a new trace, replacing the file if it exists.
+	 *
+	 * @param file       File of the trace.
+	 * @param actor      ID of the actor.
+	 * @param topicScope True if the actor has a vector clock for each topic.
+	 * @param entries    Number of entries of plausible clocks, 0 for exact vector clocks.
+	 */
+	public TraceWriter(Path file, int actor, boolean topicScope, int entries) {
+		this.file = file;
+		this.topics = new BitSet();
+		this.start = System.nanoTime();
+		this.last = 0;
+		this.events = 0;
+		try {
+			Files.createDirectories(file.toAbsolutePath().getParent());
+			this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			writeVarInt(actor);
+			out.writeBoolean(topicScope);
+			writeVarInt(entries);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot create the trace " + file, e);
+		}
+	}
+
+	/**
+	 * Record the members of the group, when the actor starts.
+	 *
+	 * @param members IDs of the members.
+	 */
+	public void group(Collection<Integer> members) {
+		try {
+			record(GROUP);
+			writeVarInt(members.size());
+			for (int member : members) {
+				writeVarInt(member);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot write the trace " + file, e);
+		}
+	}
+
+	/**
+	 * Record a new ChatMessage of the actor, delivered to itself.
+	 *
+	 * @param message ChatMessage just stamped.
+	 */
+	public void stamp(ChatMessage message) {
+		try {
+			define(message);
+			record(TraceEvent.STAMP);
+			writeMessage(message);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot write the trace " + file, e);
+		}
+	}
+
+	/**
+	 * Record a ChatMessage sent to a member of the group.
+	 *
+	 * @param destination ID of the destination.
+	 * @param message     ChatMessage.
+	 */
+	public void send(int destination, ChatMessage message) {
+		try {
+			define(message);
+			record(TraceEvent.SEND);
+			writeVarInt(destination);
+			writeVarInt(message.sender());
+			writeVarInt(message.topicId());
+			writeVarInt(message.vc().get(message.sender()));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot write the trace " + file, e);
+		}
+	}
+
+	/**
+	 * Record a ChatMessage received, before it is buffered.
+	 *
+	 * @param message ChatMessage.
+	 */
+	public void receive(ChatMessage message) {
+		try {
+			define(message);
+			record(TraceEvent.RECEIVE);
+			writeMessage(message);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot write the trace " + file, e);
+		}
+	}
+
+	/**
+	 * Return a summary of the trace.
+	 *
+	 * @return Events & size.
+	 */
+	public String summary() {
+		return String.format("%d events, %d bytes (%.1f bytes per event)", events, out.size(), events > 0 ? (double) out.size() / events : 0.0);
+	}
+
+	@Override
+	public void close() {
+		try {
+			out.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot close the trace " + file, e);
+		}
+	}
+
+	// define the topic of a message the first time it is used
+	private void define(ChatMessage message) throws IOException {
+		if (!topics.get(message.topicId())) {
+			topics.set(message.topicId());
+			out.writeByte(TOPIC);
+			writeVarInt(message.topicId());
+			out.writeUTF(message.topic());
+		}
+	}
+
+	// start a new record
+	private void record(int type) throws IOException {
+		final long now = (System.nanoTime() - start) / 1000;
+		out.writeByte(type);
+		writeVarLong(Math.max(0, now - last));
+		last = Math.max(last, now);
+		if (type != GROUP) {
+			events++;
+		}
+	}
+
+	private void writeMessage(ChatMessage message) throws IOException {
+		final VectorClock vc = message.vc();
+		writeVarInt(message.topicId());
+		writeVarInt(message.replies());
+		writeVarInt(message.sender());
+		writeVarInt(vc.size());
+		for (int slot = 0; slot < vc.capacity(); slot++) {
+			if (vc.idAt(slot) != VectorClock.NO_ID) {
+				writeVarInt(vc.idAt(slot));
+				writeVarInt(vc.valueAt(slot));
+			}
+		}
+	}
+
+	private void writeVarInt(int value) throws IOException {
+		writeVarLong(value & 0xFFFFFFFFL);
+	}
+
+	private void writeVarLong(long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+}
@@ -0,0 +1,405 @@
+package lab3.vectorclock;
+
+import lab3.messages.ChatMessage;
+import lab3.messages.CompactChatMessage;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Set of ChatMessages delivered in causal order with respect to each other, using their own Vector Clock.
+ * The actor uses a single domain for the whole group, or one for each topic.
+ * <p>
+ * With plausible clocks, the Vector Clock has a fixed number of entries and each member is hashed into one of them.
+ * The first member of each entry gives the messages of the entry their turn, so each entry counts a sequence of messages
+ * delivered in the same order by everybody, exactly like the messages of a single member.
+ * The delivery is still causal, but a message also waits for the previous messages of its entry (even if concurrent).
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+final class CausalDomain {
+
+	// ID of the owner actor
+	private final int id;
+
+	// internal state
+	private final VectorClock vc;
+	private final DeliveryBuffer buffer;
+
+	// entries tracked by the vector clock:
+	// ID -> number of messages sent by the member before leaving (Integer.MAX_VALUE if still a member)
+	private final VectorClock active;
+
+	// differential vector clocks -> null if full vector clocks are sent
+	private final DeltaEncoder encoder;
+	private final DeltaDecoder decoder;
+
+	// what the other members delivered -> null if causal stability is not tracked
+	private final MatrixClock matrix;
+
+	// members that left and whose entries were dropped: ID -> number of messages they sent (all delivered)
+	// (kept to recognize the copies of their messages arriving late, and for the causal stability)
+	private final VectorClock retired;
+
+	// plausible clocks -> number of entries (0 for one entry for each member), last turn I gave to each entry
+	private final int entries;
+	private final VectorClock sequenced;
+
+	/**
+	 * Create a new causal domain.
+	 *
+	 * @param id        ID of the actor owning the domain.
+	 * @param compact   Send only the changed entries of the vector clock.
+	 * @param stability Track the causally stable messages.
+	 * @param entries   Number of entries of plausible clocks, 0 for one entry for each member.
+	 * @param recorder  Recorder of the delivery metrics, null to disable them.
+	 */
+	CausalDomain(int id, boolean compact, boolean stability, int entries, DeliveryRecorder recorder) {
+		this.id = id;
+		this.vc = new VectorClock();
+		this.active = new VectorClock();
+		this.buffer = new DeliveryBuffer(this.vc, this.active, entries, recorder);
+		this.encoder = compact ? new DeltaEncoder(this.vc) : null;
+		this.decoder = compact ? new DeltaDecoder() : null;
+		this.retired = new VectorClock();
+		this.matrix = stability ? new MatrixClock(this.id, this.vc, this.active, this.retired) : null;
+		this.entries = entries;
+		this.sequenced = entries > 0 ? new VectorClock(entries) : null;
+	}
+
+	/**
+	 * Track the entry of a member of the group.
+	 *
+	 * @param member ID of the member.
+	 */
+	void addMember(int member) {
+		active.set(buffer.entry(member), Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Skip the messages sent by a member before I joined the group: I will never receive them.
+	 *
+	 * @param member ID of the member.
+	 * @param sent   Number of messages sent by the member before the join.
+	 */
+	void skip(int member, int sent) {
+		if (sent > this.vc.get(member)) {
+			this.vc.set(member, sent);
+			if (encoder != null) {
+				encoder.updated(member);
+			}
+		}
+	}
+
+	/**
+	 * A member left the group: its entry is dropped once all its messages are delivered (only their number is kept).
+	 *
+	 * @param member ID of the member.
+	 * @param sent   Number of messages sent by the member.
+	 * @return True if the entry was dropped, so some buffered messages may be deliverable.
+	 */
+	boolean removeMember(int member, int sent) {
+		if (!active.contains(member)) {
+			return false;
+		}
+		active.set(member, sent);
+		if (matrix != null) {
+			matrix.remove(member);
+		}
+		return retireIfDone(member);
+	}
+
+	/**
+	 * Return the number of messages sent by the owner actor in this domain.
+	 *
+	 * @return Number of sent messages.
+	 */
+	int sent() {
+		return this.vc.get(this.id);
+	}
+
+	/**
+	 * Create a new message, incrementing the owner's entry of the vector clock.
+	 * With plausible clocks, the message carries only the messages delivered so far: it gets its turn with {@link #sequence}.
+	 *
+	 * @param topic   Topic of the message.
+	 * @param replies Number of this message for this topic.
+	 * @return The new message.
+	 */
+	ChatMessage stamp(String topic, int replies) {
+		if (entries > 0) {
+			return new ChatMessage(topic, replies, this.id, this.vc);
+		}
+		this.vc.increment(this.id);
+		buffer.advanced(this.id, this.vc.get(this.id) - 1);
+		if (encoder != null) {
+			encoder.updated(this.id);
+		}
+		return new ChatMessage(topic, replies, this.id, this.vc);
+	}
+
+	/**
+	 * Restore the vector clock of a checkpoint, before any message is handled (recovery).
+	 *
+	 * @param clock Vector clock of the checkpoint.
+	 */
+	void restore(VectorClock clock) {
+		for (int slot = 0; slot < clock.capacity(); slot++) {
+			if (clock.idAt(slot) != VectorClock.NO_ID) {
+				this.vc.set(clock.idAt(slot), clock.valueAt(slot));
+			}
+		}
+	}
+
+	/**
+	 * Apply again the messages sent by the owner actor (recovery & replay): its entry of the vector clock reaches the given one.
+	 *
+	 * @param sent Entry of the owner actor in the vector clock of its last message.
+	 */
+	void restoreSent(int sent) {
+		final int previous = this.vc.get(this.id);
+		if (sent > previous) {
+			this.vc.set(this.id, sent);
+			buffer.advanced(this.id, previous);
+		}
+	}
+
+	/**
+	 * Give a message the next turn in the entry of its sender (plausible clocks only).
+	 * Called by the first member of the entry, for the messages of all the members of the entry, in the order they were sent.
+	 *
+	 * @param message Message stamped by its sender.
+	 * @return Copy of the message with its turn in the entry of the sender.
+	 */
+	ChatMessage sequence(ChatMessage message) {
+		final int entry = buffer.entry(message.sender());
+		sequenced.increment(entry);
+		final VectorClock turn = message.vc().copy();
+		turn.set(entry, sequenced.get(entry));
+		return new ChatMessage(message.topic(), message.replies(), message.sender(), turn.freeze(), message.timestamp());
+	}
+
+	/**
+	 * Return the form of a message to send to the given destination.
+	 *
+	 * @param message  Message just stamped.
+	 * @param receiver ID of the destination actor.
+	 * @return The message itself, or its compact form if differential vector clocks are used.
+	 */
+	Object encode(ChatMessage message, int receiver) {
+		return encoder != null ? encoder.encode(message, receiver) : message;
+	}
+
+	/**
+	 * Rebuild the full messages from a compact one.
+	 *
+	 * @param message Compact message received.
+	 * @param decoded Consumer of the decoded messages.
+	 */
+	void decode(CompactChatMessage message, Consumer<ChatMessage> decoded) {
+		if (decoder == null) {
+			throw new IllegalStateException("Differential vector clocks are disabled");
+		}
+		decoder.decode(message, decoded);
+	}
+
+	/**
+	 * Queue a message not yet delivered.
+	 * A copy of a message of a member that left is ignored even after its entry is dropped,
+	 * like any message of a member not tracked by this domain.
+	 *
+	 * @param message ChatMessage.
+	 * @return True if queued, false if already delivered or buffered, or if its sender is not tracked.
+	 */
+	boolean add(ChatMessage message) {
+		final int sender = message.sender();
+		if (!active.contains(buffer.entry(sender)) || message.vc().get(sender) <= retired.get(sender)) {
+			return false;
+		}
+		return buffer.add(message);
+	}
+
+	/**
+	 * Extract the next message ready to be delivered, if any.
+	 *
+	 * @return Next message to deliver, null if none.
+	 */
+	ChatMessage poll() {
+		return buffer.poll();
+	}
+
+	/**
+	 * Return the messages not delivered yet.
+	 *
+	 * @return Buffered messages, by sender and in the order in which they were sent.
+	 */
+	List<ChatMessage> buffered() {
+		return buffer.messages();
+	}
+
+	/**
+	 * Return the number of messages not delivered yet.
+	 *
+	 * @return Number of buffered messages.
+	 */
+	int size() {
+		return buffer.size();
+	}
+
+	/**
+	 * Return the number of messages of each member I know exist (reliable multicast):
+	 * the ones announced by the members, the ones sent before leaving,
+	 * and the ones before each buffered message and its dependencies.
+	 * Only the members still tracked are included, not the owner actor.
+	 *
+	 * @param announced Number of messages announced by each member (not modified).
+	 * @return Highest entry of the vector clock known for each member.
+	 */
+	VectorClock expected(VectorClock announced) {
+		final VectorClock expected = new VectorClock();
+		for (int slot = 0; slot < active.capacity(); slot++) {
+			final int i = active.idAt(slot);
+			if (i != VectorClock.NO_ID && i != this.id) {
+				final int sent = active.valueAt(slot);
+				expected.set(i, Math.max(announced.get(i), sent != Integer.MAX_VALUE ? sent : 0));
+			}
+		}
+		for (ChatMessage message : buffer.messages()) {
+			final VectorClock other = message.vc();
+			for (int slot = 0; slot < other.capacity(); slot++) {
+				final int i = other.idAt(slot);
+				if (i != VectorClock.NO_ID && i != this.id && active.contains(i) && other.valueAt(slot) > expected.get(i)) {
+					expected.set(i, other.valueAt(slot));
+				}
+			}
+		}
+		return expected;
+	}
+
+	/**
+	 * Return the number of messages of a member delivered so far.
+	 *
+	 * @param member ID of the member.
+	 * @return Entry of the vector clock of the member.
+	 */
+	int delivered(int member) {
+		return this.vc.get(member);
+	}
+
+	/**
+	 * Check if a message has been received (delivered or buffered).
+	 *
+	 * @param member ID of the sender.
+	 * @param seq    Sender's entry of the vector clock of the message.
+	 * @return True if received.
+	 */
+	boolean isReceived(int member, int seq) {
+		return seq <= this.vc.get(member) || seq <= retired.get(member) || buffer.contains(member, seq);
+	}
+
+	/**
+	 * Merge the vector clock of a message being delivered.
+	 *
+	 * @param message Message to deliver.
+	 */
+	void merge(ChatMessage message) {
+
+		// update vc -> merge (only the entries of the message, ignoring members that left)
+		// NB: no update my counter! (with plausible clocks, my entry is updated by my messages too)
+		final VectorClock other = message.vc();
+		for (int slot = 0; slot < other.capacity(); slot++) {
+			final int i = other.idAt(slot);
+			if (i != VectorClock.NO_ID && (entries > 0 || i != this.id) && other.valueAt(slot) > this.vc.get(i) && active.contains(i)) {
+				final int previous = this.vc.get(i);
+				this.vc.set(i, other.valueAt(slot));
+				buffer.advanced(i, previous);
+				if (encoder != null) {
+					encoder.updated(i);
+				}
+			}
+		}
+
+		// drop the entry of the sender if it left and this was its last message (the group is static with plausible clocks)
+		if (entries == 0) {
+			retireIfDone(message.sender());
+		}
+	}
+
+	/**
+	 * Return a copy of the vector clock of the delivered messages, to tell the other members.
+	 *
+	 * @return Immutable snapshot of the vector clock.
+	 */
+	VectorClock snapshot() {
+		return this.vc.snapshot();
+	}
+
+	/**
+	 * Return what I delivered, for the digests of the causal stability: the vector clock,
+	 * plus the members that left and whose entries were dropped (I delivered all their messages).
+	 *
+	 * @return Immutable vector clock of the delivered messages.
+	 */
+	VectorClock digest() {
+		if (retired.size() == 0) {
+			return this.vc.snapshot();
+		}
+		final VectorClock digest = this.vc.copy();
+		for (int slot = 0; slot < retired.capacity(); slot++) {
+			if (retired.idAt(slot) != VectorClock.NO_ID) {
+				digest.set(retired.idAt(slot), retired.valueAt(slot));
+			}
+		}
+		return digest.freeze();
+	}
+
+	/**
+	 * Store the vector clock of the messages delivered by another member.
+	 *
+	 * @param member    ID of the member.
+	 * @param delivered Its vector clock.
+	 */
+	void observe(int member, VectorClock delivered) {
+		if (matrix != null && active.get(member) == Integer.MAX_VALUE) {
+			matrix.update(member, delivered);
+		}
+	}
+
+	/**
+	 * Check if a message of this domain has been delivered by all the members of the group.
+	 *
+	 * @param message ChatMessage.
+	 * @return True if the message is causally stable, false if not or if stability is not tracked.
+	 */
+	boolean isStable(ChatMessage message) {
+		return matrix != null && matrix.isStable(message);
+	}
+
+	/**
+	 * Drop the entry of a member that left the group, if all its messages were delivered: remember how many they were.
+	 *
+	 * @param member ID of the member.
+	 * @return True if the entry was dropped.
+	 */
+	private boolean retireIfDone(int member) {
+		if (!active.contains(member) || this.vc.get(member) < active.get(member)) {
+			return false;
+		}
+		retired.set(member, active.get(member));
+		active.remove(member);
+		this.vc.remove(member);
+		buffer.retired(member);
+		if (encoder != null) {
+			encoder.removed(member);
+			decoder.removed(member);
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		final int undecoded = decoder != null ? decoder.size() : 0;
+		return buffer.toString() + (undecoded > 0 ? " (" + undecoded + " not decoded)" : "");
+	}
+
+}
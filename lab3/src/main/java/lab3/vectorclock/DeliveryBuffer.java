@@ -0,0 +1,348 @@
+package lab3.vectorclock;
+
+import lab3.messages.ChatMessage;
+
+import java.util.*;
+
+/**
+ * Buffer of ChatMessages not yet ready to be delivered, indexed to avoid rescanning it on every delivery.
+ * <p>
+ * Messages are indexed by sender and by the sender's entry of their vector clock:
+ * only the message following the last delivered one from each sender can ever be delivered.
+ * When such a message still depends on a message not yet delivered, it is parked
+ * on the (entry, value) pair it is waiting for and checked again only when the clock reaches that value.
+ * <p>
+ * With plausible clocks, the members are hashed into a fixed number of entries:
+ * the messages are queued by the entry of their sender instead of the sender itself.
+ * <p>
+ * The buffer does not allocate while scanning: the messages are indexed by primitive keys,
+ * the parked messages are chained through their entries and the entries of the delivered messages are reused.
+ * <p>
+ * If a recorder is given, the buffer counts the scans and the delivery checks, the entries blocking the messages
+ * and the time spent in the buffer by the delivered messages.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+final class DeliveryBuffer {
+
+	// vector clock of the owner actor (shared, updated by the actor)
+	private final VectorClock vc;
+
+	// entries tracked by the actor: the others belong to members that left the group and are ignored
+	// (shared, updated by the actor)
+	private final VectorClock active;
+
+	// buffered messages, by (sender, sender's entry of the vector clock)
+	private final LongMap<Buffered> queued;
+
+	// messages waiting for a given entry of the vector clock to reach a given value -> first one of the chain
+	private final LongMap<Buffered> waiting;
+
+	// messages that may have become deliverable
+	private final Deque<Buffered> candidates;
+
+	// entries of the delivered messages, to reuse
+	private Buffered free;
+
+	// number of buffered messages
+	private int size;
+
+	// number of entries of plausible clocks, 0 for one entry for each member
+	private final int entries;
+
+	// instrumentation -> null if disabled
+	private final DeliveryRecorder recorder;
+
+	/**
+	 * Create a new buffer for the given vector clock.
+	 *
+	 * @param vc       Vector Clock of the actor owning the buffer (not copied).
+	 * @param active   Entries tracked by the actor, by ID (not copied).
+	 * @param entries  Number of entries of plausible clocks, 0 for one entry for each member.
+	 * @param recorder Recorder of the metrics of the buffer, null to disable them.
+	 */
+	DeliveryBuffer(VectorClock vc, VectorClock active, int entries, DeliveryRecorder recorder) {
+		this.vc = vc;
+		this.active = active;
+		this.queued = new LongMap<>();
+		this.waiting = new LongMap<>();
+		this.candidates = new ArrayDeque<>();
+		this.free = null;
+		this.size = 0;
+		this.entries = entries;
+		this.recorder = recorder;
+	}
+
+	/**
+	 * Store a new message in the buffer.
+	 * A copy of a message already delivered or buffered (sent again by a member that recovered,
+	 * or duplicated by the network) is ignored.
+	 *
+	 * @param message Message not yet delivered.
+	 * @return True if stored, false if ignored.
+	 */
+	boolean add(ChatMessage message) {
+		final int sender = entry(message.sender());
+		final int seq = message.vc().get(sender);
+		final long key = key(sender, seq);
+		if (seq <= vc.get(sender) || queued.get(key) != null) {
+			return false;
+		}
+		final long arrived = recorder != null ? System.nanoTime() : 0;
+		final boolean next = seq == vc.get(sender) + 1;
+		final Buffered buffered = allocate(message, arrived, !next);
+		queued.put(key, buffered);
+		size++;
+
+		// only the next message of the sender can be delivered
+		if (next) {
+			candidates.push(buffered);
+		}
+		return true;
+	}
+
+	/**
+	 * Extract the next message ready to be delivered, if any.
+	 *
+	 * @return Next message to deliver, null if none.
+	 */
+	ChatMessage poll() {
+		if (recorder != null) {
+			recorder.scanned();
+		}
+		while (!candidates.isEmpty()) {
+			final Buffered buffered = candidates.pop();
+			final ChatMessage message = buffered.message;
+			if (message == null) {
+				continue;
+			}
+			final int sender = entry(message.sender());
+			final int seq = message.vc().get(sender);
+			final long key = key(sender, seq);
+
+			// skip messages already delivered, not the next one for their sender
+			// or still parked on a missing dependency (checked again when it arrives)
+			if (seq != vc.get(sender) + 1 || queued.get(key) != buffered || buffered.parkedOn != LongMap.NO_KEY) {
+				continue;
+			}
+
+			// deliver the message or wait for the first missing dependency
+			final int blocking = blockingEntry(message);
+			if (recorder != null) {
+				recorder.checked(blocking);
+			}
+			if (blocking < 0) {
+				queued.remove(key);
+				size--;
+				if (recorder != null) {
+					recorder.delivered(buffered.arrived, buffered.blocked);
+				}
+				release(buffered);
+				return message;
+			} else {
+				buffered.blocked = true;
+				buffered.parkedOn = key(blocking, message.vc().get(blocking));
+				buffered.next = waiting.put(buffered.parkedOn, buffered);
+			}
+		}
+
+		// no message to deliver
+		return null;
+	}
+
+	/**
+	 * Notify the buffer that an entry of the vector clock has been increased.
+	 * Only the messages waiting for the new values are checked again.
+	 *
+	 * @param entry    Entry of the vector clock that changed.
+	 * @param previous Value of the entry before the change.
+	 */
+	void advanced(int entry, int previous) {
+		final int current = vc.get(entry);
+		if (!waiting.isEmpty()) {
+			for (int value = previous + 1; value <= current; value++) {
+				unpark(waiting.remove(key(entry, value)));
+			}
+		}
+
+		// the next message of the sender may be deliverable now
+		final Buffered next = queued.get(key(entry, current + 1));
+		if (next != null) {
+			candidates.push(next);
+		}
+	}
+
+	/**
+	 * Notify the buffer that a member left the group: the messages waiting for its entry are checked again.
+	 *
+	 * @param entry Entry of the vector clock of the member.
+	 */
+	void retired(int entry) {
+		final long[] keys = new long[waiting.size()];
+		int count = 0;
+		for (int slot = 0; slot < waiting.capacity(); slot++) {
+			final long key = waiting.keyAt(slot);
+			if (key != LongMap.NO_KEY && (int) (key >>> 32) == entry) {
+				keys[count++] = key;
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			unpark(waiting.remove(keys[i]));
+		}
+	}
+
+	/**
+	 * Check if a message is in the buffer.
+	 *
+	 * @param sender ID of the sender.
+	 * @param seq    Sender's entry of the vector clock of the message.
+	 * @return True if buffered.
+	 */
+	boolean contains(int sender, int seq) {
+		return queued.get(key(entry(sender), seq)) != null;
+	}
+
+	/**
+	 * Return the number of buffered messages.
+	 *
+	 * @return Number of messages not delivered yet.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Return the entry of the vector clock of a member.
+	 *
+	 * @param member ID of the member.
+	 * @return The ID itself, or the entry the member is hashed into with plausible clocks.
+	 */
+	int entry(int member) {
+		return entry(member, entries);
+	}
+
+	/**
+	 * Return the entry of the vector clock of a member.
+	 *
+	 * @param member  ID of the member.
+	 * @param entries Number of entries of plausible clocks, 0 for one entry for each member.
+	 * @return The ID itself, or the entry the member is hashed into with plausible clocks.
+	 */
+	static int entry(int member, int entries) {
+		return entries > 0 ? Math.floorMod(member, entries) : member;
+	}
+
+	/**
+	 * Find the first entry of the vector clock that prevents the message from being delivered.
+	 * The cost is linear in the number of entries of the message's vector clock.
+	 *
+	 * @param message ChatMessage
+	 * @return Entry blocking the message, -1 if safe to deliver.
+	 */
+	private int blockingEntry(ChatMessage message) {
+
+		// extract the sender of the message
+		final int sender = entry(message.sender());
+		final VectorClock other = message.vc();
+
+		// Vj[j] = Vk[j]+1
+		if (other.get(sender) != this.vc.get(sender) + 1) {
+			return sender;
+		}
+
+		// Vj[i] ≤ Vk[i] for all i not equal to j (missing entries are 0, members that left are ignored)
+		for (int slot = 0; slot < other.capacity(); slot++) {
+			final int i = other.idAt(slot);
+			if (i != VectorClock.NO_ID && i != sender && other.valueAt(slot) > this.vc.get(i) && active.contains(i)) {
+				return i;
+			}
+		}
+
+		// both conditions are true
+		return -1;
+	}
+
+	private static long key(int entry, int value) {
+		return ((long) entry << 32) | (value & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Move a chain of parked messages to the candidates.
+	 *
+	 * @param first First message of the chain, null if none.
+	 */
+	private void unpark(Buffered first) {
+		Buffered buffered = first;
+		while (buffered != null) {
+			final Buffered next = buffered.next;
+			buffered.next = null;
+			buffered.parkedOn = LongMap.NO_KEY;
+			candidates.push(buffered);
+			buffered = next;
+		}
+	}
+
+	// entry for a new message, reusing the one of a delivered message if possible
+	private Buffered allocate(ChatMessage message, long arrived, boolean blocked) {
+		Buffered buffered = free;
+		if (buffered != null) {
+			free = buffered.next;
+			buffered.next = null;
+		} else {
+			buffered = new Buffered();
+		}
+		buffered.message = message;
+		buffered.arrived = arrived;
+		buffered.blocked = blocked;
+		buffered.parkedOn = LongMap.NO_KEY;
+		return buffered;
+	}
+
+	// a delivered message is not parked, so its entry can be reused
+	// (a stale reference among the candidates is checked again like any other candidate)
+	private void release(Buffered buffered) {
+		buffered.message = null;
+		buffered.next = free;
+		free = buffered;
+	}
+
+	/**
+	 * Return the buffered messages, by sender and in the order in which they were sent.
+	 *
+	 * @return Messages not delivered yet.
+	 */
+	List<ChatMessage> messages() {
+		final List<ChatMessage> messages = new ArrayList<>(size);
+		for (int slot = 0; slot < queued.capacity(); slot++) {
+			if (queued.keyAt(slot) != LongMap.NO_KEY) {
+				messages.add(queued.valueAt(slot).message);
+			}
+		}
+		messages.sort(Comparator.comparingInt(ChatMessage::sender).thenComparingInt(m -> m.vc().get(entry(m.sender()))));
+		return messages;
+	}
+
+	@Override
+	public String toString() {
+		return messages().toString();
+	}
+
+	// buffered message (reused once delivered)
+	private static final class Buffered {
+
+		private ChatMessage message;
+
+		// when the message was added to the buffer (System.nanoTime(), 0 if not recorded)
+		private long arrived;
+
+		// the message could not be delivered when it arrived
+		private boolean blocked;
+
+		// key of the (entry, value) pair the message is parked on, NO_KEY if not parked
+		private long parkedOn;
+
+		// next message parked on the same pair, or next free entry
+		private Buffered next;
+	}
+
+}
@@ -0,0 +1,91 @@
+package lab3.vectorclock;
+
+import lab3.metrics.DeliveryStats;
+import lab3.metrics.Histogram;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics of the causal delivery of an actor, recorded by the buffers of all its causal domains.
+ * Used only by the thread of the actor: recording does not allocate (except the first time a member blocks a message).
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+final class DeliveryRecorder {
+
+	// time spent in the buffer by the delivered messages, in microseconds
+	private final Histogram bufferWait;
+
+	// number of times each entry of the vector clock prevented the delivery of a message
+	private final VectorClock blockedOn;
+
+	// counters
+	private long delivered;
+	private long waited;
+	private long scans;
+	private long checks;
+
+	/**
+	 * Create a new empty recorder.
+	 */
+	DeliveryRecorder() {
+		this.bufferWait = new Histogram();
+		this.blockedOn = new VectorClock();
+		this.delivered = 0;
+		this.waited = 0;
+		this.scans = 0;
+		this.checks = 0;
+	}
+
+	/**
+	 * The buffer was asked for the next message to deliver.
+	 */
+	void scanned() {
+		scans++;
+	}
+
+	/**
+	 * The buffer checked if a message can be delivered.
+	 *
+	 * @param blocking Entry of the vector clock blocking the message, negative if the message can be delivered.
+	 */
+	void checked(int blocking) {
+		checks++;
+		if (blocking >= 0) {
+			blockedOn.increment(blocking);
+		}
+	}
+
+	/**
+	 * A message left the buffer to be delivered.
+	 *
+	 * @param arrived When the message was added to the buffer (System.nanoTime()).
+	 * @param blocked True if the message could not be delivered when it arrived.
+	 */
+	void delivered(long arrived, boolean blocked) {
+		delivered++;
+		if (blocked) {
+			waited++;
+		}
+		bufferWait.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - arrived));
+	}
+
+	/**
+	 * Take a snapshot of the metrics.
+	 *
+	 * @param depth Number of messages currently in the buffers.
+	 * @return Immutable snapshot.
+	 */
+	DeliveryStats snapshot(int depth) {
+		final Map<Integer, Long> blocked = new HashMap<>();
+		for (int slot = 0; slot < blockedOn.capacity(); slot++) {
+			if (blockedOn.idAt(slot) != VectorClock.NO_ID) {
+				blocked.put(blockedOn.idAt(slot), (long) blockedOn.valueAt(slot));
+			}
+		}
+		return new DeliveryStats(depth, delivered, waited, scans, checks, bufferWait, blocked);
+	}
+
+}
@@ -0,0 +1,96 @@
+package lab3.vectorclock;
+
+import lab3.messages.ChatMessage;
+import lab3.messages.CompactChatMessage;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Receiver side of the differential Vector Clock technique (Singhal-Kshemkalyani).
+ * <p>
+ * For each sender, it keeps the Vector Clock of the last message received from it
+ * and applies the changed entries to rebuild the full Vector Clock of the next one.
+ * Since the network may reorder messages, the ones received out of order are held back
+ * until the missing ones on the same link arrive.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+final class DeltaDecoder {
+
+	// state of the link from each sender
+	private final Map<Integer, Link> links;
+
+	/**
+	 * Create a new decoder.
+	 */
+	DeltaDecoder() {
+		this.links = new HashMap<>();
+	}
+
+	/**
+	 * Decode a compact message, together with all the held back messages that follow it on the same link.
+	 *
+	 * @param message Compact message received.
+	 * @param decoded Consumer of the decoded messages, in the order in which they were sent.
+	 */
+	void decode(CompactChatMessage message, Consumer<ChatMessage> decoded) {
+		final Link link = links.computeIfAbsent(message.sender(), s -> new Link());
+
+		// wait for the previous messages on the link
+		if (message.seq() != link.nextSeq) {
+			link.pending.put(message.seq(), message);
+			return;
+		}
+
+		// decode it and the following ones already received
+		CompactChatMessage next = message;
+		while (next != null) {
+			decoded.accept(link.apply(next));
+			link.nextSeq++;
+			next = link.pending.remove(link.nextSeq);
+		}
+	}
+
+	/**
+	 * Forget the link from a member that left the group.
+	 *
+	 * @param sender ID of the member.
+	 */
+	void removed(int sender) {
+		links.remove(sender);
+	}
+
+	/**
+	 * Return the number of messages held back because received out of order.
+	 *
+	 * @return Number of messages not decoded yet.
+	 */
+	int size() {
+		return links.values().stream().mapToInt(link -> link.pending.size()).sum();
+	}
+
+	// link from a sender
+	private static final class Link {
+
+		// vector clock of the last message decoded
+		private final VectorClock clock = new VectorClock();
+
+		// sequence number of the next message
+		private int nextSeq = 0;
+
+		// messages received out of order
+		private final Map<Integer, CompactChatMessage> pending = new HashMap<>();
+
+		private ChatMessage apply(CompactChatMessage message) {
+			final int[] ids = message.entries();
+			final int[] values = message.values();
+			for (int k = 0; k < ids.length; k++) {
+				clock.set(ids[k], values[k]);
+			}
+			return new ChatMessage(message.topic(), message.replies(), message.sender(), clock, message.timestamp());
+		}
+	}
+
+}
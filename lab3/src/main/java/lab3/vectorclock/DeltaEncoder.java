@@ -0,0 +1,150 @@
+package lab3.vectorclock;
+
+import lab3.messages.ChatMessage;
+import lab3.messages.CompactChatMessage;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sender side of the differential Vector Clock technique (Singhal-Kshemkalyani).
+ * <p>
+ * For each destination, it remembers when the last message was sent and encodes
+ * only the entries of the Vector Clock updated after that.
+ * Entries are kept in a list ordered by their last update,
+ * so encoding a message costs the number of changed entries, not the size of the clock.
+ * It requires the receiver to decode the messages of each link in order (see DeltaDecoder).
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+final class DeltaEncoder {
+
+	// vector clock of the owner actor (shared, updated by the actor)
+	private final VectorClock vc;
+
+	// entries ordered by last update, most recent first (doubly linked list)
+	private final Map<Integer, Entry> entries;
+	private Entry head;
+
+	// state of the link to each destination
+	private final Map<Integer, Link> links;
+
+	// local time, incremented on every update
+	private int time;
+
+	/**
+	 * Create a new encoder for the given vector clock.
+	 *
+	 * @param vc Vector Clock of the actor owning the encoder (not copied).
+	 */
+	DeltaEncoder(VectorClock vc) {
+		this.vc = vc;
+		this.entries = new HashMap<>();
+		this.head = null;
+		this.links = new HashMap<>();
+		this.time = 0;
+	}
+
+	/**
+	 * Notify the encoder that an entry of the vector clock has changed.
+	 *
+	 * @param id Entry of the vector clock that changed.
+	 */
+	void updated(int id) {
+		final Entry entry = entries.computeIfAbsent(id, Entry::new);
+		entry.lastUpdate = ++time;
+
+		// move the entry at the head of the list
+		if (head != entry) {
+			unlink(entry);
+			entry.next = head;
+			if (head != null) {
+				head.prev = entry;
+			}
+			head = entry;
+		}
+	}
+
+	/**
+	 * Notify the encoder that an entry was removed from the vector clock.
+	 * The member is also removed from the destinations.
+	 *
+	 * @param id Entry of the vector clock removed.
+	 */
+	void removed(int id) {
+		final Entry entry = entries.remove(id);
+		if (entry != null) {
+			unlink(entry);
+		}
+		links.remove(id);
+	}
+
+	/**
+	 * Encode a message for the given destination, with only the entries changed since the last send to it.
+	 *
+	 * @param message  Message just stamped with the current vector clock.
+	 * @param receiver The ID of the destination actor.
+	 * @return Compact message for the destination.
+	 */
+	CompactChatMessage encode(ChatMessage message, int receiver) {
+		final Link link = links.computeIfAbsent(receiver, r -> new Link());
+
+		// count the changed entries
+		int changed = 0;
+		for (Entry entry = head; entry != null && entry.lastUpdate > link.lastSent; entry = entry.next) {
+			changed++;
+		}
+
+		// collect them
+		final int[] ids = new int[changed];
+		final int[] values = new int[changed];
+		Entry entry = head;
+		for (int k = 0; k < changed; k++, entry = entry.next) {
+			ids[k] = entry.id;
+			values[k] = vc.get(entry.id);
+		}
+
+		link.lastSent = time;
+		return new CompactChatMessage(
+			message.topic(),
+			message.replies(),
+			message.sender(),
+			link.nextSeq++,
+			ids,
+			values,
+			message.timestamp()
+		);
+	}
+
+	private void unlink(Entry entry) {
+		if (entry.prev != null) {
+			entry.prev.next = entry.next;
+		} else if (head == entry) {
+			head = entry.next;
+		}
+		if (entry.next != null) {
+			entry.next.prev = entry.prev;
+		}
+		entry.prev = null;
+		entry.next = null;
+	}
+
+	// entry of the vector clock, with the local time of its last update ("LU" in the paper)
+	private static final class Entry {
+		private final int id;
+		private int lastUpdate;
+		private Entry prev;
+		private Entry next;
+
+		private Entry(int id) {
+			this.id = id;
+		}
+	}
+
+	// link to a destination, with the local time of the last send ("LS" in the paper)
+	private static final class Link {
+		private int lastSent;
+		private int nextSeq;
+	}
+
+}
@@ -0,0 +1,288 @@
+package lab3.vectorclock;
+
+import akka.actor.ActorRef;
+import akka.actor.ExtendedActorSystem;
+import com.typesafe.config.Config;
+import lab3.messages.ChatMessage;
+import lab3.messages.StartMessage;
+import lab3.persistence.CheckpointFile;
+import lab3.persistence.WriteAheadLog;
+import lab3.serialization.MessageSerializer;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Durable state of a VectorClockActor: a write-ahead log of the ChatMessages it received and sent
+ * and periodic checkpoints of its causal domains, to rebuild its state when it restarts.
+ * <p>
+ * The log contains the group (when the actor starts), every ChatMessage received (before it is buffered)
+ * and every ChatMessage sent, in the order in which the actor handled them: replaying it rebuilds the vector clocks,
+ * the buffers and the delivered messages exactly. A checkpoint contains the group, the vector clock and the buffered
+ * messages of each domain and the delivered messages kept by the actor, together with the position of the log
+ * when it was taken: only the records after it are replayed, and the older segments are deleted.
+ * <p>
+ * The messages are encoded with the {@link MessageSerializer}.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+final class DurableLog {
+
+	// types of the records
+	private static final int START = 1;
+	private static final int RECEIVED = 2;
+	private static final int SENT = 3;
+
+	// manifests of the encoded messages
+	private static final String CHAT = "chat";
+	private static final String GROUP = "start";
+
+	private final WriteAheadLog wal;
+	private final CheckpointFile checkpoint;
+	private final MessageSerializer serializer;
+
+	// group commit: sync at most after this number of records
+	private final int syncBatch;
+
+	// number of checkpoints taken
+	private int checkpoints;
+
+	/**
+	 * Open the log of an actor, creating it if needed.
+	 *
+	 * @param system    Actor system (to encode the actor references).
+	 * @param directory Directory of the log of the actor.
+	 * @param config    Configuration of the persistence ("lab3.persistence").
+	 */
+	DurableLog(ExtendedActorSystem system, Path directory, Config config) {
+		try {
+			this.wal = new WriteAheadLog(directory, (int) Math.min(Integer.MAX_VALUE, config.getBytes("segment-size")));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot open the log in " + directory, e);
+		}
+		this.checkpoint = new CheckpointFile(directory);
+		this.serializer = new MessageSerializer(system);
+		this.syncBatch = config.getInt("sync.batch");
+		this.checkpoints = 0;
+	}
+
+	/**
+	 * Log the group, when the actor starts.
+	 *
+	 * @param message StartMessage with the group.
+	 */
+	void started(StartMessage message) {
+		append(START, serializer.toBinary(message));
+	}
+
+	/**
+	 * Log a ChatMessage received, before it is buffered.
+	 *
+	 * @param message ChatMessage.
+	 */
+	void received(ChatMessage message) {
+		append(RECEIVED, serializer.toBinary(message));
+	}
+
+	/**
+	 * Log a ChatMessage sent, before it is sent.
+	 *
+	 * @param message ChatMessage.
+	 */
+	void sent(ChatMessage message) {
+		append(SENT, serializer.toBinary(message));
+	}
+
+	/**
+	 * Check if some records are not on disk yet.
+	 *
+	 * @return True if the log must be synced before sending messages.
+	 */
+	boolean isDirty() {
+		return wal.unsynced() > 0;
+	}
+
+	/**
+	 * Check if enough records are waiting to be synced.
+	 *
+	 * @return True if the log should be synced now.
+	 */
+	boolean isFull() {
+		return wal.unsynced() >= syncBatch;
+	}
+
+	/**
+	 * Force the records to disk.
+	 */
+	void sync() {
+		wal.sync();
+	}
+
+	/**
+	 * Take a checkpoint of the state of the actor and delete the segments of the log before it.
+	 * The log must be synced.
+	 *
+	 * @param group     Members of the group.
+	 * @param domains   Causal domains, by key.
+	 * @param delivered Delivered messages kept by the actor (null if none).
+	 */
+	void checkpoint(Map<Integer, ActorRef> group, Map<String, CausalDomain> domains, Collection<ChatMessage> delivered) {
+		final long position = wal.position();
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeLong(position);
+			writeBytes(out, serializer.toBinary(new StartMessage(group)));
+			out.writeInt(domains.size());
+			for (Map.Entry<String, CausalDomain> domain : domains.entrySet()) {
+				out.writeUTF(domain.getKey());
+				final VectorClock vc = domain.getValue().snapshot();
+				out.writeInt(vc.size());
+				for (int slot = 0; slot < vc.capacity(); slot++) {
+					if (vc.idAt(slot) != VectorClock.NO_ID) {
+						out.writeInt(vc.idAt(slot));
+						out.writeInt(vc.valueAt(slot));
+					}
+				}
+				writeMessages(out, domain.getValue().buffered());
+			}
+			writeMessages(out, delivered != null ? delivered : Collections.emptyList());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		try {
+			checkpoint.write(bytes.toByteArray());
+			wal.truncate(position);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot write the checkpoint", e);
+		}
+		checkpoints++;
+	}
+
+	/**
+	 * Read the last checkpoint and the records after it.
+	 *
+	 * @return State to recover.
+	 */
+	Recovered recover() {
+		final Recovered recovered = new Recovered();
+		long position = 0;
+		try {
+			final byte[] data = checkpoint.read();
+			if (data != null) {
+				try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+					position = in.readLong();
+					recovered.group = ((StartMessage) serializer.fromBinary(readBytes(in), GROUP)).group();
+					final int domains = in.readInt();
+					for (int d = 0; d < domains; d++) {
+						final String key = in.readUTF();
+						final int size = in.readInt();
+						final VectorClock vc = new VectorClock(size);
+						for (int i = 0; i < size; i++) {
+							vc.set(in.readInt(), in.readInt());
+						}
+						recovered.clocks.put(key, vc);
+						recovered.messages.addAll(readMessages(in));
+					}
+					recovered.delivered.addAll(readMessages(in));
+				}
+			}
+			wal.replay(position, (type, payload) -> {
+				switch (type) {
+					case START:
+						recovered.group = ((StartMessage) serializer.fromBinary(payload, GROUP)).group();
+						break;
+					case RECEIVED:
+					case SENT:
+						recovered.messages.add((ChatMessage) serializer.fromBinary(payload, CHAT));
+						break;
+					default:
+						throw new IllegalStateException("Unknown record in the log: " + type);
+				}
+			});
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot recover the log", e);
+		}
+		return recovered;
+	}
+
+	/**
+	 * Discard the log and the checkpoint (of a previous run).
+	 */
+	void clear() {
+		try {
+			checkpoint.delete();
+			wal.clear();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot clear the log", e);
+		}
+	}
+
+	/**
+	 * Sync and close the log.
+	 */
+	void close() {
+		wal.close();
+	}
+
+	/**
+	 * Return a summary of the activity of the log.
+	 *
+	 * @return Records, syncs & checkpoints.
+	 */
+	String summary() {
+		return wal.summary() + ", " + checkpoints + " checkpoints";
+	}
+
+	private void append(int type, byte[] payload) {
+		try {
+			wal.append(type, payload);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot append to the log", e);
+		}
+	}
+
+	private void writeMessages(DataOutputStream out, Collection<ChatMessage> messages) throws IOException {
+		out.writeInt(messages.size());
+		for (ChatMessage message : messages) {
+			writeBytes(out, serializer.toBinary(message));
+		}
+	}
+
+	private List<ChatMessage> readMessages(DataInputStream in) throws IOException {
+		final int size = in.readInt();
+		final List<ChatMessage> messages = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			messages.add((ChatMessage) serializer.fromBinary(readBytes(in), CHAT));
+		}
+		return messages;
+	}
+
+	private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static byte[] readBytes(DataInputStream in) throws IOException {
+		final byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return bytes;
+	}
+
+	// state read from the checkpoint & the log
+	static final class Recovered {
+
+		// members of the group, null if the actor never started
+		Map<Integer, ActorRef> group = null;
+
+		// vector clocks of the checkpoint, by domain
+		final Map<String, VectorClock> clocks = new HashMap<>();
+
+		// buffered messages of the checkpoint, then the messages received & sent (mine) after it, in order
+		final List<ChatMessage> messages = new ArrayList<>();
+
+		// delivered messages kept by the actor at the checkpoint
+		final List<ChatMessage> delivered = new ArrayList<>();
+	}
+
+}
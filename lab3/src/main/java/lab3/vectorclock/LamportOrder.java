@@ -0,0 +1,105 @@
+package lab3.vectorclock;
+
+import lab3.messages.AckMessage;
+import lab3.messages.ChatMessage;
+import lab3.messages.TotalOrderMessage;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Decentralized total order with Lamport clocks and acknowledgments.
+ * <p>
+ * A new message is sent to every member with the Lamport clock of the sender,
+ * and every member acknowledges it to everybody else with its own (greater) clock.
+ * The messages are delivered by (clock, sender): the first pending message is delivered
+ * once every other member sent something with a greater clock, since the links are FIFO
+ * and no message with a lower clock can arrive anymore.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+final class LamportOrder extends TotalOrder {
+
+	// Lamport clock
+	private long clock;
+
+	// messages not delivered yet, by (clock, sender)
+	private final PriorityQueue<Pending> pending;
+
+	// greatest clock received from each other member
+	private final Map<Integer, Long> latest;
+
+	LamportOrder(int id, Collection<Integer> members, BiConsumer<Integer, Object> network, Consumer<ChatMessage> application) {
+		super(id, members, network, application);
+		this.clock = 0;
+		this.pending = new PriorityQueue<>();
+		this.latest = new HashMap<>();
+	}
+
+	@Override
+	void broadcast(ChatMessage message) {
+		clock++;
+		pending.add(new Pending(clock, id, message));
+		final long sent = clock;
+		others.forEach(member -> send(member, sent, message));
+		deliverReady();
+	}
+
+	@Override
+	void onMessage(TotalOrderMessage message) {
+		observe(message.from(), message.clock());
+		pending.add(new Pending(message.clock(), message.from(), message.message()));
+		final long acked = clock;
+		others.forEach(member -> sendAck(member, acked));
+		deliverReady();
+	}
+
+	@Override
+	void onAck(AckMessage ack) {
+		observe(ack.from(), ack.clock());
+		deliverReady();
+	}
+
+	// update my clock & the greatest clock of the sender
+	private void observe(int from, long received) {
+		latest.put(from, received);
+		clock = Math.max(clock, received) + 1;
+	}
+
+	// deliver the first pending messages, as long as nothing with a lower clock can arrive
+	private void deliverReady() {
+		while (!pending.isEmpty() && isReady(pending.peek())) {
+			deliver(pending.poll().message);
+		}
+	}
+
+	private boolean isReady(Pending first) {
+		for (int member : others) {
+			if (member != first.sender && latest.getOrDefault(member, 0L) <= first.clock) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// message waiting for its turn
+	private static final class Pending implements Comparable<Pending> {
+
+		private final long clock;
+		private final int sender;
+		private final ChatMessage message;
+
+		private Pending(long clock, int sender, ChatMessage message) {
+			this.clock = clock;
+			this.sender = sender;
+			this.message = message;
+		}
+
+		@Override
+		public int compareTo(Pending other) {
+			return clock != other.clock ? Long.compare(clock, other.clock) : Integer.compare(sender, other.sender);
+		}
+	}
+
+}
@@ -0,0 +1,200 @@
+package lab3.vectorclock;
+
+import java.util.Arrays;
+
+/**
+ * Primitive open addressing hash map (long -> object) with linear probing, as the one of {@link VectorClock}:
+ * lookups, insertions and removals do not box the keys, so they do not allocate (except when the map grows).
+ * The keys must not be negative.
+ * To iterate, use the slots: {@code for (int s = 0; s < map.capacity(); s++)}
+ * and skip the ones where {@link #keyAt(int)} returns {@link #NO_KEY}.
+ *
+ * @param <V> Type of the values.
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+final class LongMap<V> {
+
+	/**
+	 * Key of the empty slots.
+	 */
+	static final long NO_KEY = -1;
+
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	private Object[] values;
+	private int size;
+
+	/**
+	 * Create a new empty map.
+	 */
+	LongMap() {
+		this.keys = new long[MIN_CAPACITY];
+		this.values = new Object[MIN_CAPACITY];
+		this.size = 0;
+		Arrays.fill(this.keys, NO_KEY);
+	}
+
+	/**
+	 * Return the value of a key.
+	 *
+	 * @param key Key.
+	 * @return Value, null if missing.
+	 */
+	@SuppressWarnings("unchecked")
+	V get(long key) {
+		final int slot = find(key);
+		return slot < 0 ? null : (V) values[slot];
+	}
+
+	/**
+	 * Set the value of a key.
+	 *
+	 * @param key   Key, not negative.
+	 * @param value New value, not null.
+	 * @return Previous value, null if missing.
+	 */
+	@SuppressWarnings("unchecked")
+	V put(long key, V value) {
+		if (key < 0) {
+			throw new IllegalArgumentException("Invalid key: " + key);
+		}
+		final int slot = find(key);
+		if (slot >= 0) {
+			final V previous = (V) values[slot];
+			values[slot] = value;
+			return previous;
+		}
+		insert(-slot - 1, key, value);
+		return null;
+	}
+
+	/**
+	 * Remove a key.
+	 *
+	 * @param key Key.
+	 * @return Value of the key, null if missing.
+	 */
+	@SuppressWarnings("unchecked")
+	V remove(long key) {
+		int slot = find(key);
+		if (slot < 0) {
+			return null;
+		}
+		final V removed = (V) values[slot];
+
+		// backward shift deletion: move back the following entries of the same cluster
+		final int mask = keys.length - 1;
+		int next = (slot + 1) & mask;
+		while (keys[next] != NO_KEY) {
+			final int home = hash(keys[next]) & mask;
+			if (((next - home) & mask) >= ((next - slot) & mask)) {
+				keys[slot] = keys[next];
+				values[slot] = values[next];
+				slot = next;
+			}
+			next = (next + 1) & mask;
+		}
+		keys[slot] = NO_KEY;
+		values[slot] = null;
+		size--;
+		return removed;
+	}
+
+	/**
+	 * Return the number of keys.
+	 *
+	 * @return Number of keys.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Check if the map is empty.
+	 *
+	 * @return True if there are no keys.
+	 */
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Return the number of slots, to iterate over the keys.
+	 *
+	 * @return Number of slots.
+	 */
+	int capacity() {
+		return keys.length;
+	}
+
+	/**
+	 * Return the key stored in a slot.
+	 *
+	 * @param slot Slot.
+	 * @return Key, NO_KEY if the slot is empty.
+	 */
+	long keyAt(int slot) {
+		return keys[slot];
+	}
+
+	/**
+	 * Return the value stored in a slot.
+	 *
+	 * @param slot Slot.
+	 * @return Value, null if the slot is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	V valueAt(int slot) {
+		return (V) values[slot];
+	}
+
+	/**
+	 * Find the slot of a key.
+	 *
+	 * @param key Key.
+	 * @return Slot of the key if found, otherwise (-slot - 1) where slot is the free one where to insert it.
+	 */
+	private int find(long key) {
+		final int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		while (keys[slot] != NO_KEY) {
+			if (keys[slot] == key) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -slot - 1;
+	}
+
+	private void insert(int slot, long key, Object value) {
+		keys[slot] = key;
+		values[slot] = value;
+		size++;
+
+		// keep the load factor below 1/2
+		if (size * 2 > keys.length) {
+			rehash(keys.length * 2);
+		}
+	}
+
+	private void rehash(int capacity) {
+		final long[] oldKeys = keys;
+		final Object[] oldValues = values;
+		keys = new long[capacity];
+		values = new Object[capacity];
+		size = 0;
+		Arrays.fill(keys, NO_KEY);
+		for (int slot = 0; slot < oldKeys.length; slot++) {
+			if (oldKeys[slot] != NO_KEY) {
+				insert(-find(oldKeys[slot]) - 1, oldKeys[slot], oldValues[slot]);
+			}
+		}
+	}
+
+	private static int hash(long key) {
+		final long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+}
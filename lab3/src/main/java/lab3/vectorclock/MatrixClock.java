@@ -0,0 +1,118 @@
+package lab3.vectorclock;
+
+import lab3.messages.ChatMessage;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Matrix Clock: what every member of the group has delivered, as learned from their periodic digests.
+ * <p>
+ * A message is causally stable when all the members delivered it:
+ * no message concurrent to it can arrive anymore, so it can be removed from logs and retransmission stores.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+final class MatrixClock {
+
+	// ID of the owner actor
+	private final int id;
+
+	// vector clock of the owner actor (shared, updated by the actor)
+	private final VectorClock vc;
+
+	// entries tracked by the owner actor (shared, updated by the actor)
+	private final VectorClock active;
+
+	// members that left, whose entries were dropped by the owner actor (shared, updated by the actor)
+	private final VectorClock retired;
+
+	// last vector clock received from each member
+	private final Map<Integer, VectorClock> rows;
+
+	// for each sender, number of its messages delivered by all the members (computed when needed)
+	private VectorClock stable;
+
+	/**
+	 * Create a new matrix clock.
+	 *
+	 * @param id     ID of the actor owning the matrix clock.
+	 * @param vc     Vector Clock of the owner actor (not copied).
+	 * @param active  Entries tracked by the owner actor (not copied).
+	 * @param retired Members that left, whose entries were dropped by the owner actor: ID -> messages sent (not copied).
+	 */
+	MatrixClock(int id, VectorClock vc, VectorClock active, VectorClock retired) {
+		this.id = id;
+		this.vc = vc;
+		this.active = active;
+		this.retired = retired;
+		this.rows = new HashMap<>();
+		this.stable = null;
+	}
+
+	/**
+	 * Store the vector clock of the messages delivered by a member.
+	 *
+	 * @param member    ID of the member.
+	 * @param delivered Its vector clock.
+	 */
+	void update(int member, VectorClock delivered) {
+		rows.put(member, delivered);
+		stable = null;
+	}
+
+	/**
+	 * Forget a member that left the group.
+	 *
+	 * @param member ID of the member.
+	 */
+	void remove(int member) {
+		rows.remove(member);
+		stable = null;
+	}
+
+	/**
+	 * Check if a message has been delivered by all the members of the group.
+	 *
+	 * @param message ChatMessage.
+	 * @return True if the message is causally stable.
+	 */
+	boolean isStable(ChatMessage message) {
+		if (stable == null) {
+			stable = computeStable();
+		}
+		return message.vc().get(message.sender()) <= stable.get(message.sender());
+	}
+
+	/**
+	 * Compute the minimum of each entry over the vector clocks of the members (the rows of the matrix).
+	 * The members that did not send a digest yet have delivered nothing.
+	 * A member that left counts with all its messages once they are delivered (its entry is dropped from the clocks,
+	 * but the digests still carry it): otherwise its messages would never become stable.
+	 *
+	 * @return Number of messages of each sender delivered by all the members.
+	 */
+	private VectorClock computeStable() {
+		final VectorClock min = vc.copy();
+		for (int slot = 0; slot < retired.capacity(); slot++) {
+			if (retired.idAt(slot) != VectorClock.NO_ID) {
+				min.set(retired.idAt(slot), retired.valueAt(slot));
+			}
+		}
+		for (int slot = 0; slot < active.capacity(); slot++) {
+			final int member = active.idAt(slot);
+			if (member == VectorClock.NO_ID || member == this.id || active.valueAt(slot) != Integer.MAX_VALUE) {
+				continue;
+			}
+			final VectorClock row = rows.get(member);
+			for (int entry = 0; entry < min.capacity(); entry++) {
+				final int sender = min.idAt(entry);
+				if (sender != VectorClock.NO_ID) {
+					min.set(sender, row == null ? 0 : Math.min(min.valueAt(entry), row.get(sender)));
+				}
+			}
+		}
+		return min;
+	}
+
+}
@@ -0,0 +1,177 @@
+package lab3.vectorclock;
+
+import lab3.messages.ChatMessage;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Check the order of the delivered ChatMessages while they are delivered, without storing them.
+ * <p>
+ * For each causal domain (a topic, or the whole group), it merges the Vector Clocks of the delivered messages,
+ * so the memory is linear in the number of members, not of messages. A message must be the next one of its sender:
+ * a lower entry is a copy or a message delivered after a later one of the same sender (FIFO order),
+ * and any higher entry (of the sender or of another member) is a message it depends on not delivered yet (causal order).
+ * For each topic, the number of replies must not decrease (topic order): concurrent replies of different chatters
+ * may break it even with a causal delivery, so they are only counted (the topic is not ordered), not reported one by one.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+final class OrderVerifier {
+
+	// one clock for each topic or one for the whole group, entries of plausible clocks (0 for one entry for each member)
+	private final boolean topicScope;
+	private final int entries;
+
+	// merged vector clock of the delivered messages, by key of the causal domain (topic, or GROUP)
+	private final Map<String, VectorClock> clocks;
+
+	// state of each topic (interned, see TopicRegistry)
+	private final Map<String, TopicState> topics;
+
+	// notified of every violation, when it happens
+	private final Consumer<String> violations;
+
+	/**
+	 * Create a new verifier.
+	 *
+	 * @param topicScope True if each topic is a causal domain, false for a single domain for the whole group.
+	 * @param entries    Number of entries of plausible clocks, 0 for one entry for each member.
+	 * @param violations Consumer of the description of each violation.
+	 */
+	OrderVerifier(boolean topicScope, int entries, Consumer<String> violations) {
+		this.topicScope = topicScope;
+		this.entries = entries;
+		this.clocks = new HashMap<>();
+		this.topics = new HashMap<>();
+		this.violations = violations;
+	}
+
+	/**
+	 * Count the messages of a member that will never be delivered, because they were sent before the join.
+	 *
+	 * @param key    Key of the causal domain (topic, or GROUP).
+	 * @param member ID of the member.
+	 * @param sent   Number of messages sent by the member before the join.
+	 */
+	void skipped(String key, int member, int sent) {
+		final VectorClock clock = clock(key);
+		final int entry = DeliveryBuffer.entry(member, entries);
+		clock.set(entry, Math.max(clock.get(entry), sent));
+	}
+
+	/**
+	 * Count the messages delivered before a checkpoint, not delivered again when recovering from it.
+	 *
+	 * @param key       Key of the causal domain (topic, or GROUP).
+	 * @param delivered Vector clock of the checkpoint.
+	 */
+	void restored(String key, VectorClock delivered) {
+		merge(clock(key), delivered);
+	}
+
+	/**
+	 * Check a message being delivered.
+	 *
+	 * @param message ChatMessage just delivered.
+	 * @return True if the message is in order, false otherwise.
+	 */
+	boolean delivered(ChatMessage message) {
+		final VectorClock clock = clock(topicScope ? message.topic() : VectorClockActor.GROUP);
+		final TopicState state = topics.computeIfAbsent(message.topic(), t -> new TopicState());
+		final ChatMessage last = state.last;
+		state.delivered++;
+		state.last = message;
+
+		// the message must be the next one of its sender
+		final VectorClock other = message.vc();
+		final int sender = DeliveryBuffer.entry(message.sender(), entries);
+		final int seq = other.get(sender);
+		String violation = null;
+		if (seq <= clock.get(sender)) {
+			violation = "duplicate or FIFO order: " + message + other + " delivered after " + clock;
+		} else if (seq > clock.get(sender) + 1) {
+			violation = "causal order: " + message + other + " delivered before " + (seq - clock.get(sender) - 1) + " previous message(s) of its sender";
+		}
+
+		// the message must not depend on a message not delivered yet
+		for (int slot = 0; slot < other.capacity() && violation == null; slot++) {
+			final int i = other.idAt(slot);
+			if (i != VectorClock.NO_ID && i != sender && other.valueAt(slot) > clock.get(i)) {
+				violation = "causal order: " + message + other + " delivered before its dependencies " + clock;
+			}
+		}
+
+		merge(clock, other);
+		if (violation != null) {
+			state.violations++;
+			violations.accept(violation);
+			return false;
+		}
+
+		// replies are not decreasing
+		if (last != null && message.replies() < last.replies()) {
+			state.reordered++;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Return a one-line summary of each topic, sorted by topic.
+	 *
+	 * @return Summary of each topic, by topic.
+	 */
+	Map<String, String> summary() {
+		final Map<String, String> summary = new TreeMap<>();
+		topics.forEach((topic, state) -> summary.put(topic, state.toString()));
+		return summary;
+	}
+
+	/**
+	 * Check if a topic had no violations and its replies were delivered in order.
+	 *
+	 * @param topic Topic.
+	 * @return True if all the messages of the topic were delivered in order.
+	 */
+	boolean isOrdered(String topic) {
+		final TopicState state = topics.get(topic);
+		return state == null || state.violations + state.reordered == 0;
+	}
+
+	// merged clock of a causal domain
+	private VectorClock clock(String key) {
+		return clocks.computeIfAbsent(key, k -> new VectorClock());
+	}
+
+	// raise each entry of a clock to the one of another clock
+	private static void merge(VectorClock clock, VectorClock other) {
+		for (int slot = 0; slot < other.capacity(); slot++) {
+			final int i = other.idAt(slot);
+			if (i != VectorClock.NO_ID && other.valueAt(slot) > clock.get(i)) {
+				clock.set(i, other.valueAt(slot));
+			}
+		}
+	}
+
+	// state of a topic
+	private static final class TopicState {
+
+		// last delivered message
+		private ChatMessage last = null;
+
+		// number of delivered messages, violations and messages with fewer replies than the previous one
+		private int delivered = 0;
+		private int violations = 0;
+		private int reordered = 0;
+
+		@Override
+		public String toString() {
+			return delivered + " delivered, last " + last + "(" + violations + " violations"
+				+ (reordered > 0 ? ", " + reordered + " replies out of order" : "") + ")";
+		}
+	}
+
+}
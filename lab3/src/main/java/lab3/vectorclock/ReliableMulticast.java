@@ -0,0 +1,366 @@
+package lab3.vectorclock;
+
+import com.typesafe.config.Config;
+import lab3.messages.ChatMessage;
+import lab3.metrics.Histogram;
+import lab3.metrics.RepairStats;
+import lab3.network.FaultInjector;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reliability layer of a VectorClockActor: it finds the ChatMessages lost by the network and gets them sent again.
+ * <p>
+ * The vector clocks tell the receiver which messages it misses: a buffered message reveals the previous messages
+ * of its sender and its dependencies, and the heartbeat of a member that stops sending reveals its last messages.
+ * A message still missing after the NACK delay (it may be just late) is requested to its sender with a NACK,
+ * repeated after the same delay until the message arrives. The sender keeps its last messages of each causal domain
+ * in a bounded store, to send them again; the copies received more than once are ignored by the delivery buffers.
+ * With causal stability, the messages delivered by all the members are discarded from the store: nobody can miss them.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+final class ReliableMulticast {
+
+	/**
+	 * Destination of the NACKs.
+	 */
+	interface NackSender {
+
+		/**
+		 * Ask a member to send again some of its messages.
+		 *
+		 * @param domain Key of the causal domain.
+		 * @param member ID of the sender of the messages.
+		 * @param from   Sender's entry of the vector clock of the first missing message.
+		 * @param to     Sender's entry of the vector clock of the last missing message (included).
+		 */
+		void nack(String domain, int member, int from, int to);
+	}
+
+	// delay before asking a missing message (and again), capacity of the store of each domain
+	private final long nackDelay;
+	private final int storeSize;
+
+	// my last messages, by causal domain
+	private final Map<String, Store> store;
+
+	// number of messages announced by the other members, by causal domain
+	private final Map<String, VectorClock> announced;
+
+	// missing messages, by causal domain and (member, sender's entry of the vector clock)
+	private final Map<String, LongMap<Gap>> gaps;
+
+	// heartbeat -> I sent messages not announced yet, I sent messages since the last tick
+	private boolean unannounced;
+	private boolean sentSinceTick;
+
+	// statistics
+	private long sent;
+	private long discarded;
+	private long ignored;
+	private long nacks;
+	private long retransmitted;
+	private long heartbeats;
+	private long unrecoverable;
+	private final Histogram recovery;
+
+	/**
+	 * Create the reliability layer of an actor.
+	 *
+	 * @param config Configuration of the reliability ("lab3.reliability").
+	 */
+	ReliableMulticast(Config config) {
+		this.nackDelay = config.getDuration("nack-delay", TimeUnit.NANOSECONDS);
+		this.storeSize = config.getInt("store-size");
+		if (storeSize < 1) {
+			throw new IllegalArgumentException("The store must keep at least a message: " + storeSize);
+		}
+		this.store = new HashMap<>();
+		this.announced = new HashMap<>();
+		this.gaps = new HashMap<>();
+		this.recovery = new Histogram();
+	}
+
+	/**
+	 * Keep a message I am sending, to send it again if requested.
+	 *
+	 * @param domain    Key of the causal domain.
+	 * @param message   ChatMessage stamped by me.
+	 * @param receivers Number of members it is sent to.
+	 */
+	void stored(String domain, ChatMessage message, int receivers) {
+		final int seq = message.vc().get(message.sender());
+		sent += receivers;
+		final Store messages = store.computeIfAbsent(domain, key -> new Store(storeSize));
+		messages.ring[(seq - 1) % storeSize] = message;
+		messages.last = seq;
+		unannounced = true;
+		sentSinceTick = true;
+	}
+
+	/**
+	 * Find a message of mine requested by another member.
+	 *
+	 * @param domain Key of the causal domain.
+	 * @param seq    My entry of the vector clock of the message.
+	 * @return The message, null if no longer in the store (counted as unrecoverable, unless discarded because stable).
+	 */
+	ChatMessage lookup(String domain, int seq) {
+		final Store messages = store.get(domain);
+		if (messages != null && seq <= messages.stable) {
+			return null;
+		}
+		final ChatMessage message = messages != null && seq > 0 ? messages.ring[(seq - 1) % storeSize] : null;
+		if (message == null || message.vc().get(message.sender()) != seq) {
+			unrecoverable++;
+			return null;
+		}
+		retransmitted++;
+		return message;
+	}
+
+	/**
+	 * Discard from the store my messages delivered by all the members (causally stable), oldest first.
+	 * Called periodically, if causal stability is tracked.
+	 *
+	 * @param domains Causal domains, by key.
+	 */
+	void collect(Map<String, CausalDomain> domains) {
+		store.forEach((key, messages) -> {
+			final CausalDomain domain = domains.get(key);
+
+			// the oldest messages were already overwritten by the newest ones
+			messages.stable = Math.max(messages.stable, messages.last - storeSize);
+			while (messages.stable < messages.last) {
+				final int slot = messages.stable % storeSize;
+				if (!domain.isStable(messages.ring[slot])) {
+					break;
+				}
+				messages.ring[slot] = null;
+				messages.stable++;
+				discarded++;
+			}
+		});
+	}
+
+	/**
+	 * Check if it is time to announce the messages I sent: I sent some since the last heartbeat, but none since the last tick.
+	 * Called at every tick.
+	 *
+	 * @return True if a heartbeat must be sent now.
+	 */
+	boolean announce() {
+		final boolean announce = unannounced && !sentSinceTick;
+		if (announce) {
+			unannounced = false;
+		}
+		sentSinceTick = false;
+		return announce;
+	}
+
+	/**
+	 * Store the number of messages sent by a member, from its heartbeat.
+	 *
+	 * @param domain Key of the causal domain.
+	 * @param member ID of the member.
+	 * @param sent   Number of messages it sent.
+	 */
+	void announced(String domain, int member, int sent) {
+		final VectorClock clock = announced.computeIfAbsent(domain, key -> new VectorClock());
+		if (sent > clock.get(member)) {
+			clock.set(member, sent);
+		}
+	}
+
+	/**
+	 * Notify the arrival of a new message: if it was requested, measure how long it took to recover it.
+	 *
+	 * @param domain  Key of the causal domain.
+	 * @param message ChatMessage received for the first time.
+	 */
+	void received(String domain, ChatMessage message) {
+		final LongMap<Gap> missing = gaps.get(domain);
+		if (missing == null || missing.isEmpty()) {
+			return;
+		}
+		final Gap gap = missing.remove(key(message.sender(), message.vc().get(message.sender())));
+		if (gap != null && gap.nacked != 0) {
+			recovery.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - gap.detected));
+		}
+	}
+
+	/**
+	 * Find the missing messages of all the domains and request the ones missing for longer than the NACK delay.
+	 * The consecutive messages of the same member are requested with a single NACK. Called at every tick.
+	 *
+	 * @param domains Causal domains, by key.
+	 * @param sender  Destination of the NACKs.
+	 */
+	void repair(Map<String, CausalDomain> domains, NackSender sender) {
+		final long now = System.nanoTime();
+		domains.forEach((key, domain) -> {
+			final LongMap<Gap> missing = gaps.computeIfAbsent(key, k -> new LongMap<>());
+			forget(domain, missing);
+
+			final VectorClock expected = domain.expected(announced(key));
+			for (int slot = 0; slot < expected.capacity(); slot++) {
+				final int member = expected.idAt(slot);
+				if (member == VectorClock.NO_ID) {
+					continue;
+				}
+				final int last = expected.valueAt(slot);
+				int from = -1;
+				for (int seq = domain.delivered(member) + 1; seq <= last + 1; seq++) {
+					final boolean due = seq <= last && !domain.isReceived(member, seq) && isDue(missing, member, seq, now);
+					if (due && from < 0) {
+						from = seq;
+					} else if (!due && from >= 0) {
+						sender.nack(key, member, from, seq - 1);
+						nacks++;
+						from = -1;
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Check if some messages are missing in any domain.
+	 *
+	 * @param domains Causal domains, by key.
+	 * @return True if a message is known to exist but was never received.
+	 */
+	boolean hasMissing(Map<String, CausalDomain> domains) {
+		for (Map.Entry<String, CausalDomain> entry : domains.entrySet()) {
+			final CausalDomain domain = entry.getValue();
+			final VectorClock expected = domain.expected(announced(entry.getKey()));
+			for (int slot = 0; slot < expected.capacity(); slot++) {
+				final int member = expected.idAt(slot);
+				if (member == VectorClock.NO_ID) {
+					continue;
+				}
+				for (int seq = domain.delivered(member) + 1; seq <= expected.valueAt(slot); seq++) {
+					if (!domain.isReceived(member, seq)) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Check if some messages I sent were never announced (the actor is not quiet yet).
+	 *
+	 * @return True if a heartbeat is pending.
+	 */
+	boolean isUnannounced() {
+		return unannounced;
+	}
+
+	/**
+	 * Count a copy of a message received again and ignored.
+	 */
+	void ignored() {
+		ignored++;
+	}
+
+	/**
+	 * Count the heartbeats sent.
+	 *
+	 * @param count Number of heartbeats.
+	 */
+	void heartbeats(int count) {
+		heartbeats += count;
+	}
+
+	/**
+	 * Take a snapshot of the statistics.
+	 *
+	 * @param faults Fault injector of the actor, null if the network is reliable.
+	 * @return Statistics.
+	 */
+	RepairStats stats(FaultInjector faults) {
+		return new RepairStats(
+			sent,
+			discarded,
+			faults != null ? faults.dropped() : 0,
+			faults != null ? faults.duplicated() : 0,
+			ignored,
+			nacks,
+			retransmitted,
+			heartbeats,
+			unrecoverable,
+			recovery
+		);
+	}
+
+	// messages announced in a domain
+	private VectorClock announced(String domain) {
+		return announced.computeIfAbsent(domain, key -> new VectorClock());
+	}
+
+	// track a missing message: true if it must be requested now
+	private boolean isDue(LongMap<Gap> missing, int member, int seq, long now) {
+		Gap gap = missing.get(key(member, seq));
+		if (gap == null) {
+			gap = new Gap(now);
+			missing.put(key(member, seq), gap);
+		}
+		if (now - gap.detected < nackDelay || (gap.nacked != 0 && now - gap.nacked < nackDelay)) {
+			return false;
+		}
+		gap.nacked = now;
+		return true;
+	}
+
+	// forget the missing messages received meanwhile
+	private static void forget(CausalDomain domain, LongMap<Gap> missing) {
+		if (missing.isEmpty()) {
+			return;
+		}
+		final long[] keys = new long[missing.size()];
+		int count = 0;
+		for (int slot = 0; slot < missing.capacity(); slot++) {
+			final long key = missing.keyAt(slot);
+			if (key != LongMap.NO_KEY && domain.isReceived((int) (key >>> 32), (int) key)) {
+				keys[count++] = key;
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			missing.remove(keys[i]);
+		}
+	}
+
+	private static long key(int member, int seq) {
+		return ((long) member << 32) | (seq & 0xFFFFFFFFL);
+	}
+
+	// my last messages of a causal domain: the message with sender's entry seq is at (seq - 1) % size,
+	// the ones up to stable were discarded (delivered by everybody), the last one stored is last
+	private static final class Store {
+
+		private final ChatMessage[] ring;
+		private int stable;
+		private int last;
+
+		private Store(int size) {
+			this.ring = new ChatMessage[size];
+		}
+	}
+
+	// missing message: when it was found missing and requested the last time (System.nanoTime(), 0 if never)
+	private static final class Gap {
+
+		private final long detected;
+		private long nacked;
+
+		private Gap(long detected) {
+			this.detected = detected;
+		}
+	}
+
+}
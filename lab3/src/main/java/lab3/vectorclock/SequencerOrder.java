@@ -0,0 +1,61 @@
+package lab3.vectorclock;
+
+import lab3.messages.AckMessage;
+import lab3.messages.ChatMessage;
+import lab3.messages.TotalOrderMessage;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Total order with a fixed sequencer (the member with the lowest ID).
+ * <p>
+ * A new message is sent only to the sequencer, which delivers it and forwards it to all the other members.
+ * The links are FIFO, so everybody delivers the messages in the order in which the sequencer forwarded them,
+ * and the messages of the same sender in the order in which they were sent.
+ * The order is also causal: a message sent after a delivery reaches the sequencer after the delivered one.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+final class SequencerOrder extends TotalOrder {
+
+	// ID of the sequencer
+	private final int sequencer;
+
+	SequencerOrder(int id, Collection<Integer> members, BiConsumer<Integer, Object> network, Consumer<ChatMessage> application) {
+		super(id, members, network, application);
+		this.sequencer = Collections.min(members);
+	}
+
+	@Override
+	void broadcast(ChatMessage message) {
+		if (id == sequencer) {
+			order(message);
+		} else {
+			send(sequencer, 0, message);
+		}
+	}
+
+	@Override
+	void onMessage(TotalOrderMessage message) {
+		if (id == sequencer) {
+			order(message.message());
+		} else {
+			deliver(message.message());
+		}
+	}
+
+	@Override
+	void onAck(AckMessage ack) {
+		// not used by this protocol
+	}
+
+	// give the message its turn: forward it to everybody & deliver it
+	private void order(ChatMessage message) {
+		others.forEach(member -> send(member, 0, message));
+		deliver(message);
+	}
+
+}
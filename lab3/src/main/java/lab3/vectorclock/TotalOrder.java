@@ -0,0 +1,194 @@
+package lab3.vectorclock;
+
+import lab3.messages.AckMessage;
+import lab3.messages.ChatMessage;
+import lab3.messages.TotalOrderMessage;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Protocol that delivers the ChatMessages in the same order at every member of a static group.
+ * <p>
+ * The messages of the protocol travel on FIFO links: each one is numbered on its link,
+ * and the receiver handles the messages of each sender in the order in which they were sent,
+ * whatever the delay of the network.
+ * <p>
+ * The order of the delivered messages is summarized by a digest: the members delivered the same sequence
+ * if they delivered the same number of messages with the same digest.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+abstract class TotalOrder {
+
+	// my ID & the IDs of the other members, sorted
+	final int id;
+	final List<Integer> others;
+
+	// send a message to a member & deliver a ChatMessage to the application
+	private final BiConsumer<Integer, Object> network;
+	private final Consumer<ChatMessage> application;
+
+	// FIFO links: next sequence number to send & to handle, by member; messages arrived too early, by member & sequence number
+	private final Map<Integer, Integer> nextSent;
+	private final Map<Integer, Integer> nextReceived;
+	private final Map<Integer, Map<Integer, Object>> early;
+
+	// delivered messages & digest of their order
+	private long delivered;
+	private int digest;
+
+	/**
+	 * Create the protocol.
+	 *
+	 * @param id          ID of this member.
+	 * @param members     IDs of all the members of the group (also mine).
+	 * @param network     Send a message to a member, given its ID.
+	 * @param application Deliver a ChatMessage to the application.
+	 */
+	TotalOrder(int id, Collection<Integer> members, BiConsumer<Integer, Object> network, Consumer<ChatMessage> application) {
+		this.id = id;
+		final List<Integer> others = new ArrayList<>(members);
+		others.remove(Integer.valueOf(id));
+		Collections.sort(others);
+		this.others = Collections.unmodifiableList(others);
+		this.network = network;
+		this.application = application;
+		this.nextSent = new HashMap<>();
+		this.nextReceived = new HashMap<>();
+		this.early = new HashMap<>();
+		this.delivered = 0;
+		this.digest = 0;
+	}
+
+	/**
+	 * Create the protocol with the given name.
+	 *
+	 * @param protocol    Name of the protocol: "sequencer" or "lamport".
+	 * @param id          ID of this member.
+	 * @param members     IDs of all the members of the group (also mine).
+	 * @param network     Send a message to a member, given its ID.
+	 * @param application Deliver a ChatMessage to the application.
+	 * @return The protocol.
+	 */
+	static TotalOrder create(String protocol, int id, Collection<Integer> members,
+	                         BiConsumer<Integer, Object> network, Consumer<ChatMessage> application) {
+		switch (protocol) {
+			case "sequencer":
+				return new SequencerOrder(id, members, network, application);
+			case "lamport":
+				return new LamportOrder(id, members, network, application);
+			default:
+				throw new IllegalArgumentException("Unknown ordering: " + protocol);
+		}
+	}
+
+	/**
+	 * Send a new ChatMessage to the group: it will be delivered in its turn, also by me.
+	 *
+	 * @param message ChatMessage.
+	 */
+	abstract void broadcast(ChatMessage message);
+
+	/**
+	 * Handle a TotalOrderMessage, in FIFO order on its link.
+	 *
+	 * @param message TotalOrderMessage.
+	 */
+	abstract void onMessage(TotalOrderMessage message);
+
+	/**
+	 * Handle an AckMessage, in FIFO order on its link.
+	 *
+	 * @param ack AckMessage.
+	 */
+	abstract void onAck(AckMessage ack);
+
+	/**
+	 * Handle a TotalOrderMessage arrived from the network.
+	 *
+	 * @param message TotalOrderMessage.
+	 */
+	final void receive(TotalOrderMessage message) {
+		receive(message.from(), message.seq(), message);
+	}
+
+	/**
+	 * Handle an AckMessage arrived from the network.
+	 *
+	 * @param ack AckMessage.
+	 */
+	final void receive(AckMessage ack) {
+		receive(ack.from(), ack.seq(), ack);
+	}
+
+	/**
+	 * Send a ChatMessage to a member.
+	 *
+	 * @param receiver ID of the receiver.
+	 * @param clock    Lamport clock of the message (0 if not used).
+	 * @param message  ChatMessage.
+	 */
+	final void send(int receiver, long clock, ChatMessage message) {
+		network.accept(receiver, new TotalOrderMessage(id, nextSeq(receiver), clock, message));
+	}
+
+	/**
+	 * Send an acknowledgment to a member.
+	 *
+	 * @param receiver ID of the receiver.
+	 * @param clock    My Lamport clock.
+	 */
+	final void sendAck(int receiver, long clock) {
+		network.accept(receiver, new AckMessage(id, nextSeq(receiver), clock));
+	}
+
+	/**
+	 * Deliver a ChatMessage to the application, in its turn.
+	 *
+	 * @param message ChatMessage.
+	 */
+	final void deliver(ChatMessage message) {
+		delivered++;
+		digest = 31 * digest + Objects.hash(message.topic(), message.replies(), message.sender(), message.timestamp());
+		application.accept(message);
+	}
+
+	/**
+	 * Return a one-line summary of the delivered messages.
+	 *
+	 * @return Number of delivered messages & digest of their order.
+	 */
+	String summary() {
+		return String.format("%d delivered, digest %08x", delivered, digest);
+	}
+
+	private int nextSeq(int receiver) {
+		final int seq = nextSent.getOrDefault(receiver, 0);
+		nextSent.put(receiver, seq + 1);
+		return seq;
+	}
+
+	// handle the message if it is the next one on its link (and the ones that were waiting for it), otherwise keep it
+	private void receive(int from, int seq, Object message) {
+		if (seq != nextReceived.getOrDefault(from, 0)) {
+			early.computeIfAbsent(from, f -> new HashMap<>()).put(seq, message);
+			return;
+		}
+		Object next = message;
+		int expected = seq;
+		while (next != null) {
+			expected++;
+			nextReceived.put(from, expected);
+			if (next instanceof TotalOrderMessage) {
+				onMessage((TotalOrderMessage) next);
+			} else {
+				onAck((AckMessage) next);
+			}
+			final Map<Integer, Object> waiting = early.get(from);
+			next = waiting != null ? waiting.remove(expected) : null;
+		}
+	}
+
+}
@@ -0,0 +1,172 @@
+package lab3.vectorclock;
+
+import com.typesafe.config.ConfigFactory;
+import lab3.messages.ChatMessage;
+import lab3.trace.Trace;
+import lab3.trace.TraceEvent;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Replay the traces recorded by the actors ("lab3.trace") through the same delivery logic of the {@link VectorClockActor},
+ * on a single thread and as fast as possible: the result does not depend on the network delays or on the scheduling,
+ * so the replay is a repeatable benchmark of the delivery and an offline check of the causal order of a recorded run.
+ * <p>
+ * The delivery of each actor depends only on the messages it received, in the order in which it received them,
+ * so the traces of the actors are replayed one after the other. The first rounds warm up the JVM,
+ * then the best time is reported.
+ * <p>
+ * Usage: TraceReplay [directory of the traces, default "lab3.trace.directory"/lab3] [rounds, default 10]
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public final class TraceReplay {
+
+	private TraceReplay() {
+	}
+
+	// entry point
+	public static void main(String[] args) throws IOException {
+		final Path directory = args.length > 0
+			? Paths.get(args[0])
+			: Paths.get(ConfigFactory.load().getString("lab3.trace.directory"), "lab3");
+		final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+		// load the traces in memory
+		final List<Trace> traces = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.trace")) {
+			for (Path file : files) {
+				traces.add(Trace.read(file));
+			}
+		}
+		if (traces.isEmpty()) {
+			System.out.println("No traces in " + directory);
+			return;
+		}
+		traces.sort(Comparator.comparingInt(Trace::actor));
+
+		// replay
+		List<Result> results = null;
+		long best = Long.MAX_VALUE;
+		for (int round = 0; round < rounds; round++) {
+			final long start = System.nanoTime();
+			results = new ArrayList<>(traces.size());
+			for (Trace trace : traces) {
+				results.add(replay(trace));
+			}
+			best = Math.min(best, System.nanoTime() - start);
+		}
+
+		// results of the last round & time of the best one
+		long events = 0;
+		long received = 0;
+		for (Result result : results) {
+			System.out.println(result);
+			events += result.events;
+			received += result.received;
+		}
+		System.out.println(String.format(
+			"Replayed %d traces (%d events, %d received messages), best of %d rounds: %.3f ms, %.1f ns per received message",
+			traces.size(),
+			events,
+			received,
+			rounds,
+			best / 1e6,
+			received > 0 ? (double) best / received : 0.0
+		));
+	}
+
+	/**
+	 * Replay the trace of an actor.
+	 *
+	 * @param trace Trace.
+	 * @return Result of the delivery.
+	 */
+	public static Result replay(Trace trace) {
+		final Result result = new Result(trace.actor());
+		final Map<String, CausalDomain> domains = new HashMap<>();
+		final OrderVerifier verifier = new OrderVerifier(trace.topicScope(), trace.entries(), violation -> result.violations++);
+		for (TraceEvent event : trace.events()) {
+			result.events++;
+			switch (event.type()) {
+				case TraceEvent.STAMP: {
+					final CausalDomain domain = domain(domains, trace, event.topic());
+					domain.restoreSent(event.seq());
+					verifier.delivered(event.message());
+					result.stamped++;
+					break;
+				}
+				case TraceEvent.SEND:
+					result.sent++;
+					break;
+				case TraceEvent.RECEIVE: {
+					final CausalDomain domain = domain(domains, trace, event.topic());
+					domain.add(event.message());
+					result.received++;
+					ChatMessage toDeliver;
+					while ((toDeliver = domain.poll()) != null) {
+						domain.merge(toDeliver);
+						verifier.delivered(toDeliver);
+						result.delivered++;
+					}
+					break;
+				}
+				default:
+					throw new IllegalArgumentException("Unknown event: " + event.type());
+			}
+		}
+		for (CausalDomain domain : domains.values()) {
+			result.undelivered += domain.size();
+		}
+		return result;
+	}
+
+	// causal domain of a topic, created as the actor does
+	private static CausalDomain domain(Map<String, CausalDomain> domains, Trace trace, String topic) {
+		return domains.computeIfAbsent(trace.topicScope() ? topic : VectorClockActor.GROUP, key -> {
+			final CausalDomain domain = new CausalDomain(trace.actor(), false, false, trace.entries(), null);
+			trace.members().forEach(domain::addMember);
+			return domain;
+		});
+	}
+
+	/**
+	 * Result of the replay of the trace of an actor.
+	 */
+	public static final class Result {
+
+		public final int actor;
+		public long events;
+		public long stamped;
+		public long sent;
+		public long received;
+		public long delivered;
+		public long undelivered;
+		public long violations;
+
+		private Result(int actor) {
+			this.actor = actor;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(
+				"Actor %d -> %d events: %d stamped, %d sent, %d received, %d delivered, %d not delivered, %d violations",
+				actor,
+				events,
+				stamped,
+				sent,
+				received,
+				delivered,
+				undelivered,
+				violations
+			);
+		}
+	}
+
+}
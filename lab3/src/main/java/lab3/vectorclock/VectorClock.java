@@ -0,0 +1,308 @@
+package lab3.vectorclock;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Sparse Vector Clock, keyed by the ID of the group members.
+ * <p>
+ * Entries are stored in a primitive open addressing hash map (int -> int) with linear probing,
+ * so the cost of copying or iterating a clock depends on the number of entries, not on the largest ID.
+ * Missing entries have value 0.
+ * To iterate without allocations, use the slots: {@code for (int s = 0; s < clock.capacity(); s++)}
+ * and skip the ones where {@link #idAt(int)} returns {@link #NO_ID}.
+ * <p>
+ * A clock can be frozen into an immutable snapshot (see {@link #snapshot()}),
+ * which can be shared by all the messages and the destinations that carry it without copying it again.
+ *
+ * @author Davide Pedranz <davide.pedranz@gmail.com>
+ */
+public final class VectorClock implements Serializable {
+
+	/**
+	 * ID of the empty slots.
+	 */
+	public static final int NO_ID = -1;
+
+	private static final int MIN_CAPACITY = 4;
+
+	private int[] ids;
+	private int[] values;
+	private int size;
+
+	// immutable snapshot
+	private boolean frozen;
+
+	/**
+	 * Create a new empty Vector Clock.
+	 */
+	public VectorClock() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * Create a new empty Vector Clock.
+	 *
+	 * @param expected Expected number of entries.
+	 */
+	public VectorClock(int expected) {
+		final int capacity = capacityFor(expected);
+		this.ids = new int[capacity];
+		this.values = new int[capacity];
+		this.size = 0;
+		this.frozen = false;
+		Arrays.fill(this.ids, NO_ID);
+	}
+
+	/**
+	 * Return the value of an entry.
+	 *
+	 * @param id ID of the member.
+	 * @return Value of the entry, 0 if missing.
+	 */
+	public int get(int id) {
+		final int slot = find(id);
+		return slot < 0 ? 0 : values[slot];
+	}
+
+	/**
+	 * Check if the clock has an entry for the given member.
+	 *
+	 * @param id ID of the member.
+	 * @return True if the entry exists.
+	 */
+	public boolean contains(int id) {
+		return find(id) >= 0;
+	}
+
+	/**
+	 * Set the value of an entry.
+	 *
+	 * @param id    ID of the member.
+	 * @param value New value.
+	 */
+	public void set(int id, int value) {
+		checkMutable();
+		if (id < 0) {
+			throw new IllegalArgumentException("Invalid ID: " + id);
+		}
+		final int slot = find(id);
+		if (slot >= 0) {
+			values[slot] = value;
+		} else {
+			insert(-slot - 1, id, value);
+		}
+	}
+
+	/**
+	 * Increment an entry by one.
+	 *
+	 * @param id ID of the member.
+	 * @return New value of the entry.
+	 */
+	public int increment(int id) {
+		checkMutable();
+		final int slot = find(id);
+		if (slot >= 0) {
+			return ++values[slot];
+		} else {
+			insert(-slot - 1, id, 1);
+			return 1;
+		}
+	}
+
+	/**
+	 * Remove an entry.
+	 *
+	 * @param id ID of the member.
+	 */
+	public void remove(int id) {
+		checkMutable();
+		int slot = find(id);
+		if (slot < 0) {
+			return;
+		}
+
+		// backward shift deletion: move back the following entries of the same cluster
+		final int mask = ids.length - 1;
+		int next = (slot + 1) & mask;
+		while (ids[next] != NO_ID) {
+			final int home = hash(ids[next]) & mask;
+			if (((next - home) & mask) >= ((next - slot) & mask)) {
+				ids[slot] = ids[next];
+				values[slot] = values[next];
+				slot = next;
+			}
+			next = (next + 1) & mask;
+		}
+		ids[slot] = NO_ID;
+		values[slot] = 0;
+		size--;
+	}
+
+	/**
+	 * Return the number of entries.
+	 *
+	 * @return Number of entries.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Return the number of slots, to iterate over the entries.
+	 *
+	 * @return Number of slots.
+	 */
+	public int capacity() {
+		return ids.length;
+	}
+
+	/**
+	 * Return the ID of the member stored in a slot.
+	 *
+	 * @param slot Slot.
+	 * @return ID of the member, NO_ID if the slot is empty.
+	 */
+	public int idAt(int slot) {
+		return ids[slot];
+	}
+
+	/**
+	 * Return the value stored in a slot.
+	 *
+	 * @param slot Slot.
+	 * @return Value of the entry.
+	 */
+	public int valueAt(int slot) {
+		return values[slot];
+	}
+
+	/**
+	 * Create a copy of this Vector Clock, sized for its entries.
+	 * The copy is mutable, also if this clock is frozen.
+	 *
+	 * @return Deep copy.
+	 */
+	public VectorClock copy() {
+		final VectorClock copy = new VectorClock(size);
+		if (copy.ids.length == ids.length) {
+			System.arraycopy(ids, 0, copy.ids, 0, ids.length);
+			System.arraycopy(values, 0, copy.values, 0, values.length);
+			copy.size = size;
+		} else {
+			for (int slot = 0; slot < ids.length; slot++) {
+				if (ids[slot] != NO_ID) {
+					copy.set(ids[slot], values[slot]);
+				}
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Return an immutable snapshot of this Vector Clock.
+	 *
+	 * @return This clock if it is already frozen, otherwise a frozen copy.
+	 */
+	public VectorClock snapshot() {
+		return frozen ? this : copy().freeze();
+	}
+
+	/**
+	 * Freeze this Vector Clock: it cannot be changed anymore.
+	 * Use it for a clock built by the caller and never changed again, to avoid copying it.
+	 *
+	 * @return This clock.
+	 */
+	public VectorClock freeze() {
+		frozen = true;
+		return this;
+	}
+
+	/**
+	 * Check if this Vector Clock is an immutable snapshot.
+	 *
+	 * @return True if it cannot be changed.
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder("{");
+		for (int slot = 0; slot < ids.length; slot++) {
+			if (ids[slot] != NO_ID) {
+				if (builder.length() > 1) {
+					builder.append(", ");
+				}
+				builder.append(ids[slot]).append('=').append(values[slot]);
+			}
+		}
+		return builder.append('}').toString();
+	}
+
+	/**
+	 * Find the slot of an entry.
+	 *
+	 * @param id ID of the member.
+	 * @return Slot of the entry if found, otherwise (-slot - 1) where slot is the free one where to insert it.
+	 */
+	private int find(int id) {
+		final int mask = ids.length - 1;
+		int slot = hash(id) & mask;
+		while (ids[slot] != NO_ID) {
+			if (ids[slot] == id) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -slot - 1;
+	}
+
+	private void checkMutable() {
+		if (frozen) {
+			throw new IllegalStateException("Immutable snapshot of a Vector Clock");
+		}
+	}
+
+	private void insert(int slot, int id, int value) {
+		ids[slot] = id;
+		values[slot] = value;
+		size++;
+
+		// keep the load factor below 1/2
+		if (size * 2 > ids.length) {
+			rehash(ids.length * 2);
+		}
+	}
+
+	private void rehash(int capacity) {
+		final int[] oldIds = ids;
+		final int[] oldValues = values;
+		ids = new int[capacity];
+		values = new int[capacity];
+		size = 0;
+		Arrays.fill(ids, NO_ID);
+		for (int slot = 0; slot < oldIds.length; slot++) {
+			if (oldIds[slot] != NO_ID) {
+				insert(-find(oldIds[slot]) - 1, oldIds[slot], oldValues[slot]);
+			}
+		}
+	}
+
+	private static int capacityFor(int expected) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < expected * 2 + 1) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private static int hash(int id) {
+		final int h = id * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+}
@@ -1,197 +1,886 @@
 package lab3.vectorclock;
 
 import akka.actor.ActorRef;
-import akka.actor.UntypedActor;
-import com.google.common.collect.Ordering;
-import lab3.messages.ChatMessage;
-import lab3.messages.StopMessage;
+import akka.actor.Cancellable;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.UntypedActorWithStash;
+import com.typesafe.config.Config;
+import common.output.Output;
+import lab3.messages.*;
+import lab3.metrics.DeliveryStats;
+import lab3.metrics.DeliveryStatsBean;
+import lab3.metrics.Histogram;
+import lab3.metrics.RepairStats;
+import lab3.network.DelayModel;
+import lab3.network.FaultInjector;
+import lab3.trace.TraceWriter;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
 
-import java.security.SecureRandom;
+import javax.management.JMException;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
  * Abstract actor that implements Vector Clock to deliver ChatMessages in a topic based order.
+ * <p>
+ * The group is dynamic: the actor starts when it receives a StartMessage with the members of the group.
+ * If it is not a member yet, it joins the group and waits for a WelcomeMessage from every member.
+ * When asked to leave, it announces how many messages it sent with a GoodbyeMessage,
+ * and the other members drop its entry from their Vector Clock once they delivered all of them.
+ * <p>
+ * Messages are ordered within a causal domain, each with its own Vector Clock:
+ * a single one for the whole group, or one for each topic if "lab3.vector-clock.scope" is "topic".
+ * In the latter case, a message waits only for the messages on the same topic it depends on.
+ * <p>
+ * If "lab3.vector-clock.plausible.entries" is positive, the Vector Clocks have that fixed number of entries
+ * (plausible clocks): each member is hashed into an entry, and sends its messages to the first member of the entry,
+ * which gives them their turn and sends them to everybody. The delivery is still causal, but a message also waits
+ * for the previous messages of its entry, and the group is static: members cannot join or leave it.
+ * <p>
+ * If "lab3.vector-clock.stability.enabled" is on, the actors periodically tell each other what they delivered:
+ * the messages delivered by every member are causally stable and are discarded from the store of the reliable multicast
+ * (see "lab3.reliability") and from the log. The messages of a member that left become stable once everybody delivered them all.
+ * <p>
+ * The order of the delivered messages is checked while they are delivered, and every violation is printed.
+ * The messages themselves are kept only if "lab3.debug.delivered-log" is on.
+ * <p>
+ * If "lab3.network.batching.enabled" is on, the ChatMessages for the same destination are collected
+ * for a short window (or up to a maximum number) and sent together in a single BatchMessage.
+ * <p>
+ * If "lab3.network.dissemination.strategy" is "tree", a ChatMessage is sent only to a few members (the fanout),
+ * which forward it to the rest of the group along a tree rooted at the sender: the sender does O(fanout) work
+ * and a message reaches everybody in O(log N) hops. The tree is built from the members known by the sender,
+ * so the members that left the group meanwhile still forward the messages of their subtree.
+ * <p>
+ * If "lab3.ordering" is "sequencer" or "lamport", the ChatMessages are delivered in the same order by every member
+ * (also by their sender, in their turn) by a total order protocol on top of the Vector Clocks,
+ * which are still used to check the order. The group is static: members cannot join or leave it.
+ * <p>
+ * If "lab3.metrics.enabled" is on, the delivery buffers are instrumented: a snapshot of the metrics is taken periodically,
+ * printed and exposed through a JMX MXBean.
+ * <p>
+ * If "lab3.persistence.enabled" is on, the actor writes the ChatMessages it receives and sends to a write-ahead log
+ * on disk and periodically takes a checkpoint of its causal domains (see {@link DurableLog}). When Akka restarts it,
+ * it rebuilds its group, its Vector Clocks, its buffers and its delivered messages from the disk (in preStart),
+ * and sends again its messages logged after the checkpoint (the members ignore the copies they already have).
+ * The log is synced in groups of records, and the messages are sent only when the records before them are on disk.
+ * The group is static: members cannot join or leave it.
+ * <p>
+ * With "lab3.trace.enabled", the actor records the ChatMessages it stamps, sends and receives in a binary trace
+ * (see {@link TraceWriter}), which {@link TraceReplay} replays through the same delivery logic, deterministically.
+ * The group is static with the trace too.
  *
  * @author Davide Pedranz <davide.pedranz@gmail.com>
  */
-public abstract class VectorClockActor extends UntypedActor {
+public abstract class VectorClockActor extends UntypedActorWithStash {
+
+	// key of the causal domain of the whole group
+	static final String GROUP = "";
+
+	// ordering with Vector Clocks only
+	private static final String CAUSAL = "causal";
+
+	// periodic messages to myself
+	private enum Tick {
+		DIGEST,
+		FLUSH,
+		METRICS,
+		SYNC,
+		CHECKPOINT,
+		REPAIR
+	}
 
 	// initialization parameters
 	private final int id;
-	private final int numberOfActors;
-	private final List<ActorRef> actors;
 
-	// internal state
-	private final int[] vc;
-	private final List<ChatMessage> buffer;
+	// group membership
+	private final Map<Integer, ActorRef> members;
+	private final Set<Integer> awaitingWelcome;
+	private boolean started;
+	private boolean left;
+
+	// members that left the group -> number of messages they sent, by causal domain
+	private final Map<Integer, Map<String, Integer>> departed;
+
+	// internal state: causal domains by key (topic, or GROUP for the whole group)
+	private final Map<String, CausalDomain> domains;
+	private final boolean topicScope;
+	private final boolean compact;
+
+	// plausible clocks -> number of entries (0 if disabled), first member of each entry,
+	// requests sent, next request to handle & requests arrived too early, by sender
+	private final int plausibleEntries;
+	private int[] entryLeaders;
+	private int requestsSent;
+	private final Map<Integer, Integer> nextRequest;
+	private final Map<Integer, Map<Integer, OrderRequestMessage>> earlyRequests;
 
-	// delivered messages -> for debug
+	// causal stability -> periodic digest of the delivered messages, null if disabled
+	private final FiniteDuration digestInterval;
+	private Cancellable digestTimer;
+
+	// check the order of the delivered messages
+	private final OrderVerifier verifier;
+
+	// instrumentation -> null if disabled
+	private final DeliveryRecorder recorder;
+	private final FiniteDuration metricsInterval;
+	private final boolean metricsJmx;
+	private final boolean metricsDump;
+	private Cancellable metricsTimer;
+	private DeliveryStatsBean metricsBean;
+
+	// delivered messages -> for debug, null if disabled
 	private final List<ChatMessage> delivered;
+	private int discarded;
+
+	// simulate the network delay
+	private final DelayModel delayModel;
+
+	// batching -> messages not sent yet, by destination (window null if disabled)
+	private final FiniteDuration batchWindow;
+	private final int batchSize;
+	private final Map<Integer, List<Object>> outbox;
+	private boolean flushScheduled;
+
+	// dissemination -> fanout of the tree (0 for unicast), actors known so far (members & departed),
+	// messages to forward to actors not known yet, IDs of the other members in the order used by my trees
+	private final int relayFanout;
+	private final Map<Integer, ActorRef> known;
+	private final Map<Integer, List<RelayMessage>> pendingRelays;
+	private int[] relayTargets;
 
-	// make delivery randomly
-	private final SecureRandom random;
+	// total order -> name of the protocol (CAUSAL if disabled), protocol created when the group is known
+	private final String ordering;
+	private TotalOrder totalOrder;
+
+	// persistence -> log on disk (null if disabled), messages held until the log is synced,
+	// recover also on the first start, restarted by Akka, rebuilding the state from the log
+	private final DurableLog durable;
+	private final FiniteDuration syncInterval;
+	private final FiniteDuration checkpointInterval;
+	private final Deque<Held> held;
+	private final boolean recoverOnStart;
+	private boolean syncScheduled;
+	private Cancellable checkpointTimer;
+	private boolean restarted;
+	private boolean recovering;
+
+	// record & replay -> trace of the events, null if disabled
+	private final TraceWriter trace;
+
+	// faulty network -> injector of the faults, null if the network is reliable
+	private final FaultInjector faults;
+
+	// reliable multicast -> NACKs & retransmissions (null if disabled), how often to look for missing messages
+	private final ReliableMulticast repair;
+	private final FiniteDuration repairInterval;
+	private Cancellable repairTimer;
+
+	// termination detection -> basic messages sent & received so far
+	private long basicSent;
+	private long basicReceived;
 
 	/**
 	 * This actor use a Vector Clock to deliver messages preserving the order by topic.
 	 *
-	 * @param id             This actor identifier (used for the vector clock)
-	 * @param numberOfActors Number of actors in the system (used for the vector clock)
-	 * @param actors         Actors in the system (used for the vector clock)
+	 * @param id This actor identifier (used for the vector clock)
 	 */
-	public VectorClockActor(int id, int numberOfActors, List<ActorRef> actors) {
+	public VectorClockActor(int id) {
+		this(id, null);
+	}
+
+	/**
+	 * This actor use a Vector Clock to deliver messages preserving the order by topic.
+	 *
+	 * @param id         This actor identifier (used for the vector clock)
+	 * @param delayModel Delay of the sent messages (null to use the one in the configuration)
+	 */
+	public VectorClockActor(int id, DelayModel delayModel) {
 
 		// initialize actor parameters
 		this.id = id;
-		this.numberOfActors = numberOfActors;
-		this.actors = Collections.unmodifiableList(actors);
 
-		// initialize the vector clock
-		this.vc = new int[numberOfActors];
+		// the group is not known yet
+		this.members = new HashMap<>();
+		this.awaitingWelcome = new HashSet<>();
+		this.started = false;
+		this.left = false;
+		this.departed = new HashMap<>();
+
+		// the vector clocks are created when needed
+		final Config config = getContext().system().settings().config().getConfig("lab3.vector-clock");
+		this.domains = new HashMap<>();
+		this.topicScope = "topic".equals(config.getString("scope"));
+		this.compact = config.getBoolean("compact");
+		this.digestInterval = config.getBoolean("stability.enabled")
+			? Duration.create(config.getDuration("stability.interval", TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS)
+			: null;
+		this.plausibleEntries = config.getInt("plausible.entries");
+		if (plausibleEntries < 0) {
+			throw new IllegalArgumentException("Invalid number of entries: " + plausibleEntries);
+		}
+		if (plausibleEntries > 0 && (compact || digestInterval != null)) {
+			throw new IllegalArgumentException("Plausible clocks cannot be used with compact clocks or causal stability");
+		}
+		this.entryLeaders = null;
+		this.requestsSent = 0;
+		this.nextRequest = new HashMap<>();
+		this.earlyRequests = new HashMap<>();
+
+		// check the delivered messages & store them only if asked to
+		this.verifier = new OrderVerifier(topicScope, plausibleEntries, violation -> Output.print(Output.Level.INFO, "Actor " + id + " -> VIOLATION: " + violation));
+		this.delivered = getContext().system().settings().config().getBoolean("lab3.debug.delivered-log")
+			? new LinkedList<>()
+			: null;
+		this.discarded = 0;
+
+		// instrument the delivery
+		final Config metrics = getContext().system().settings().config().getConfig("lab3.metrics");
+		this.recorder = metrics.getBoolean("enabled") ? new DeliveryRecorder() : null;
+		this.metricsInterval = Duration.create(metrics.getDuration("interval", TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+		this.metricsJmx = metrics.getBoolean("jmx");
+		this.metricsDump = metrics.getBoolean("dump");
+
+		// delay the sent messages
+		this.delayModel = delayModel != null
+			? delayModel
+			: DelayModel.fromConfig(getContext().system().settings().config().getConfig("lab3.network"));
 
-		// create a buffer to temporally store message not ready to be delivered
-		this.buffer = new LinkedList<>();
+		// collect the messages for the same destination
+		final Config batching = getContext().system().settings().config().getConfig("lab3.network.batching");
+		this.batchWindow = batching.getBoolean("enabled")
+			? Duration.create(batching.getDuration("window", TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS)
+			: null;
+		this.batchSize = batching.getInt("max-size");
+		this.outbox = new HashMap<>();
+		this.flushScheduled = false;
+
+		// send the ChatMessages to everybody or along a tree
+		final Config dissemination = getContext().system().settings().config().getConfig("lab3.network.dissemination");
+		final String strategy = dissemination.getString("strategy");
+		if ("tree".equals(strategy)) {
+			this.relayFanout = dissemination.getInt("fanout");
+			if (relayFanout < 1) {
+				throw new IllegalArgumentException("Invalid fanout: " + relayFanout);
+			}
+		} else if ("unicast".equals(strategy)) {
+			this.relayFanout = 0;
+		} else {
+			throw new IllegalArgumentException("Unknown dissemination strategy: " + strategy);
+		}
+		this.known = new HashMap<>();
+		this.pendingRelays = new HashMap<>();
+		this.relayTargets = null;
+
+		// order the messages only causally or in the same order for everybody
+		this.ordering = getContext().system().settings().config().getString("lab3.ordering");
+		this.totalOrder = null;
+		if (plausibleEntries > 0 && !CAUSAL.equals(ordering)) {
+			throw new IllegalArgumentException("Plausible clocks cannot be used with " + ordering + " ordering");
+		}
+
+		// write the messages to a log on disk, to recover them after a restart
+		final Config persistence = getContext().system().settings().config().getConfig("lab3.persistence");
+		if (persistence.getBoolean("enabled")) {
+			if (!CAUSAL.equals(ordering) || compact || plausibleEntries > 0) {
+				throw new IllegalArgumentException("The persistence requires causal ordering with exact, full vector clocks");
+			}
+			this.durable = new DurableLog(
+				(ExtendedActorSystem) getContext().system(),
+				Paths.get(persistence.getString("directory"), getContext().system().name(), getSelf().path().name()),
+				persistence
+			);
+		} else {
+			this.durable = null;
+		}
+		this.syncInterval = Duration.create(persistence.getDuration("sync.interval", TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+		this.checkpointInterval = Duration.create(persistence.getDuration("checkpoint-interval", TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+		this.held = new ArrayDeque<>();
+		this.recoverOnStart = persistence.getBoolean("recover-on-start");
+		this.syncScheduled = false;
+		this.restarted = false;
+		this.recovering = false;
 
-		// store the delivered messages
-		this.delivered = new LinkedList<>();
+		// record the events in a trace, to replay them offline
+		final Config tracing = getContext().system().settings().config().getConfig("lab3.trace");
+		if (tracing.getBoolean("enabled")) {
+			if (!CAUSAL.equals(ordering) || durable != null) {
+				throw new IllegalArgumentException("The trace requires causal ordering and no persistence");
+			}
+			this.trace = new TraceWriter(
+				Paths.get(tracing.getString("directory"), getContext().system().name(), getSelf().path().name() + ".trace"),
+				id,
+				topicScope,
+				plausibleEntries
+			);
+		} else {
+			this.trace = null;
+		}
 
-		// deliver the message in a random order
-		this.random = new SecureRandom();
+		// drop & duplicate the messages carrying ChatMessages, and repair the losses
+		this.faults = FaultInjector.fromConfig(getContext().system().settings().config().getConfig("lab3.network.faults"));
+		final Config reliability = getContext().system().settings().config().getConfig("lab3.reliability");
+		if (reliability.getBoolean("enabled")) {
+			if (!CAUSAL.equals(ordering) || compact || plausibleEntries > 0 || durable != null) {
+				throw new IllegalArgumentException("The reliable multicast requires causal ordering with exact, full vector clocks and no persistence");
+			}
+			this.repair = new ReliableMulticast(reliability);
+		} else {
+			this.repair = null;
+		}
+		this.repairInterval = Duration.create(reliability.getDuration("interval", TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
 	}
 
 	@Override
 	public void preStart() {
-		assert this.numberOfActors == this.actors.size();
+		if (durable == null) {
+			return;
+		}
+
+		// restarted by Akka -> rebuild the state from the log, otherwise start a new log
+		if (restarted || recoverOnStart) {
+			recover();
+		} else {
+			durable.clear();
+		}
+	}
+
+	@Override
+	public void postRestart(Throwable reason) throws Exception {
+		restarted = true;
+		super.postRestart(reason);
 	}
 
 	@Override
 	public void postStop() {
 
-		// partition messages
-		final Map<String, List<ChatMessage>> partition = delivered
-			.stream()
-			.collect(Collectors.groupingBy(ChatMessage::topic));
+		// stop the periodic digests & metrics
+		if (digestTimer != null) {
+			digestTimer.cancel();
+		}
+		if (metricsTimer != null) {
+			metricsTimer.cancel();
+		}
+		if (metricsBean != null) {
+			metricsBean.unregister();
+		}
+		if (repairTimer != null) {
+			repairTimer.cancel();
+		}
+
+		// write the last records & send the messages waiting for them
+		if (durable != null) {
+			if (checkpointTimer != null) {
+				checkpointTimer.cancel();
+			}
+			syncLog();
+			durable.close();
+		}
+
+		// write the last events
+		if (trace != null) {
+			trace.close();
+		}
+
+		// nobody reads the summary -> do not build it
+		if (!Output.enabled(Output.Level.INFO)) {
+			return;
+		}
+
+		// partition messages (only if stored)
+		final Map<String, List<ChatMessage>> partition = delivered != null
+			? delivered.stream().collect(Collectors.groupingBy(ChatMessage::topic))
+			: Collections.emptyMap();
 
 		// build summary
 		final StringBuilder builder = new StringBuilder("Actor " + id + "\n");
-		partition.forEach((topic, list) -> {
-			final boolean ordered = Ordering.natural().isOrdered(list);
+		verifier.summary().forEach((topic, summary) -> {
 			builder
 				.append(" -> topic ")
 				.append(topic)
 				.append(" [")
-				.append(ordered ? "OK" : "KO")
+				.append(verifier.isOrdered(topic) ? "OK" : "KO")
 				.append("]: ")
-				.append(list)
+				.append(summary)
 				.append("\n");
+			if (partition.containsKey(topic)) {
+				builder
+					.append("    ")
+					.append(partition.get(topic))
+					.append("\n");
+			}
 		});
+		if (totalOrder != null) {
+			builder
+				.append(" -> TOTAL ORDER (")
+				.append(ordering)
+				.append("): ")
+				.append(totalOrder.summary())
+				.append("\n");
+		}
+		if (recorder != null) {
+			builder
+				.append(" -> METRICS: ")
+				.append(metricsSnapshot())
+				.append("\n");
+		}
+		if (durable != null) {
+			builder
+				.append(" -> LOG: ")
+				.append(durable.summary())
+				.append("\n");
+		}
+		if (trace != null) {
+			builder
+				.append(" -> TRACE: ")
+				.append(trace.summary())
+				.append("\n");
+		}
+		if (repair != null || faults != null) {
+			builder
+				.append(" -> REPAIR: ")
+				.append(repairStats())
+				.append("\n");
+		}
+		if (delivered != null && digestInterval != null) {
+			builder
+				.append(" -> STABLE (discarded): ")
+				.append(discarded)
+				.append("\n");
+		}
 		builder
 			.append(" -> NOT DELIVERED: ")
-			.append(buffer);
+			.append(domains.values().stream().map(CausalDomain::toString).collect(Collectors.joining(" ")));
 
 		// print summary
-		System.out.println(builder.toString());
+		Output.print(Output.Level.INFO, builder.toString());
 	}
 
 	@Override
 	public final void onReceive(Object message) throws Exception {
-		if (message instanceof ChatMessage) {
-			handleChatMessage((ChatMessage) message);
+		// count the basic messages for the termination detection (the stashed ones when handled)
+		if (started && isBasic(message)) {
+			basicReceived++;
+		}
+
+		if (message instanceof StartMessage) {
+			handleStartMessage((StartMessage) message);
+		} else if (message instanceof WelcomeMessage) {
+			handleWelcomeMessage((WelcomeMessage) message);
 		} else if (message instanceof StopMessage) {
 			onStopMessage((StopMessage) message);
+		} else if (message instanceof ProbeMessage) {
+			handleProbeMessage((ProbeMessage) message);
+		} else if (!started) {
+			// the group is not known yet -> handle the message later
+			stash();
+		} else if (message instanceof ChatMessage) {
+			handleChatMessage((ChatMessage) message);
+		} else if (message instanceof CompactChatMessage && compact) {
+			handleCompactChatMessage((CompactChatMessage) message);
+		} else if (message instanceof RelayMessage) {
+			handleRelayMessage((RelayMessage) message);
+		} else if (message instanceof BatchMessage) {
+			handleBatchMessage((BatchMessage) message);
+		} else if (message instanceof OrderRequestMessage && plausibleEntries > 0) {
+			handleOrderRequestMessage((OrderRequestMessage) message);
+		} else if (message instanceof TotalOrderMessage && totalOrder != null) {
+			totalOrder.receive((TotalOrderMessage) message);
+		} else if (message instanceof AckMessage && totalOrder != null) {
+			totalOrder.receive((AckMessage) message);
+		} else if (message instanceof JoinMessage) {
+			handleJoinMessage((JoinMessage) message);
+		} else if (message instanceof LeaveMessage) {
+			handleLeaveMessage();
+		} else if (message instanceof GoodbyeMessage) {
+			handleGoodbyeMessage((GoodbyeMessage) message);
+		} else if (message instanceof DigestMessage) {
+			handleDigestMessage((DigestMessage) message);
+		} else if (message instanceof NackMessage && repair != null) {
+			handleNackMessage((NackMessage) message);
+		} else if (message instanceof HeartbeatMessage && repair != null) {
+			handleHeartbeatMessage((HeartbeatMessage) message);
+		} else if (message == Tick.DIGEST) {
+			collectStableMessages();
+			sendDigest();
+		} else if (message == Tick.FLUSH) {
+			flushScheduled = false;
+			flushAll();
+		} else if (message == Tick.METRICS) {
+			publishMetrics();
+		} else if (message == Tick.SYNC) {
+			syncScheduled = false;
+			syncLog();
+		} else if (message == Tick.CHECKPOINT) {
+			syncLog();
+			durable.checkpoint(members, domains, delivered);
+		} else if (message == Tick.REPAIR) {
+			repairTick();
 		} else {
-			unhandled(message);
+			onMessage(message);
 		}
 	}
 
 	/**
-	 * Handle a new ChatMessage.
-	 * Queue the message and deliver all the deliverable ones.
+	 * Handle the StartMessage: store the group and join it if not a member yet.
 	 *
-	 * @param newMessage Message to handle.
+	 * @param message StartMessage.
 	 */
-	private void handleChatMessage(ChatMessage newMessage) {
+	private void handleStartMessage(StartMessage message) {
+		if (started || !awaitingWelcome.isEmpty()) {
+			return;
+		}
 
-		// add the message to the buffer
-		buffer.add(newMessage);
+		// store the group
+		message.group().forEach(this::addMember);
 
-		// check if I have a message to deliver
-		Optional<ChatMessage> toDeliver;
-		do {
-			toDeliver = nextMessage();
-			toDeliver.ifPresent(this::deliverChatMessage);
-		} while (toDeliver.isPresent());
+		// I am already a member
+		if (message.group().containsKey(this.id)) {
+			if (durable != null) {
+				durable.started(message);
+				durable.sync();
+			}
+			start();
+			return;
+		}
+
+		// join the group: I will never receive the messages sent before the join
+		if (isStatic()) {
+			throw new IllegalStateException("Actor " + id + " cannot join a static group (total order, plausible clocks, persistence or trace)");
+		}
+		addMember(this.id, getSelf());
+		awaitingWelcome.addAll(message.group().keySet());
+		final JoinMessage join = new JoinMessage(this.id);
+		message.group().values().forEach(actor -> actor.tell(join, getSelf()));
+		if (awaitingWelcome.isEmpty()) {
+			start();
+		}
 	}
 
 	/**
-	 * Extract the next message ready to be delivered.
+	 * Handle the reply of a member to my JoinMessage:
+	 * the messages it sent before the join must not be waited for.
 	 *
-	 * @return Next message to deliver.
+	 * @param message WelcomeMessage.
 	 */
-	private Optional<ChatMessage> nextMessage() {
+	private void handleWelcomeMessage(WelcomeMessage message) {
+		if (awaitingWelcome.remove(message.id())) {
+			message.sent().forEach((key, sent) -> {
+				domainByKey(key).skip(message.id(), sent);
+				verifier.skipped(key, message.id(), sent);
+			});
+			if (awaitingWelcome.isEmpty()) {
+				start();
+			}
+		}
+	}
+
+	/**
+	 * Handle a new actor joining the group.
+	 *
+	 * @param message JoinMessage.
+	 */
+	private void handleJoinMessage(JoinMessage message) {
+		addMember(message.id(), getSender());
+		getSender().tell(new WelcomeMessage(this.id, sent()), getSelf());
+
+		// I already left the group -> tell the new member too, or it would wait for me forever
+		if (left) {
+			getSender().tell(new GoodbyeMessage(this.id, sent()), getSelf());
+		}
+	}
+
+	/**
+	 * Leave the group: tell the others how many messages I sent.
+	 */
+	private void handleLeaveMessage() {
+		if (left) {
+			return;
+		}
+		if (isStatic()) {
+			Output.print(Output.Level.INFO, "Actor " + id + " -> cannot leave a static group (total order, plausible clocks, persistence or trace)");
+			return;
+		}
+		left = true;
+		final GoodbyeMessage goodbye = new GoodbyeMessage(this.id, sent());
+		members.forEach((member, actor) -> {
+			if (member != this.id) {
+				actor.tell(goodbye, getSelf());
+			}
+		});
+	}
 
-		// iterate over the buffer to check messages ready to be delivered
-		final Iterator<ChatMessage> iterator = buffer.iterator();
+	/**
+	 * Handle a member leaving the group: its entry is dropped once all its messages are delivered.
+	 *
+	 * @param message GoodbyeMessage.
+	 */
+	private void handleGoodbyeMessage(GoodbyeMessage message) {
+		members.remove(message.id());
+		relayTargets = null;
+		departed.put(message.id(), message.sent());
+		domains.forEach((key, domain) -> {
+			if (domain.removeMember(message.id(), message.sent().getOrDefault(key, 0))) {
+				deliverAll(domain);
+			}
+		});
+	}
+
+	/**
+	 * Handle the digest of the messages delivered by another member.
+	 *
+	 * @param message DigestMessage.
+	 */
+	private void handleDigestMessage(DigestMessage message) {
+		message.delivered().forEach((key, delivered) -> domainByKey(key).observe(message.id(), delivered));
+	}
+
+	/**
+	 * Tell the other members which messages I delivered.
+	 */
+	private void sendDigest() {
+		if (left) {
+			return;
+		}
+		final Map<String, VectorClock> snapshot = new HashMap<>();
+		domains.forEach((key, domain) -> snapshot.put(key, domain.digest()));
+		final DigestMessage digest = new DigestMessage(this.id, snapshot);
+		members.forEach((member, actor) -> {
+			if (member != this.id) {
+				send(member, actor, digest);
+			}
+		});
+	}
+
+	/**
+	 * Discard the messages that are causally stable (delivered by all the members):
+	 * from the store of the reliable multicast and from the log of the delivered messages.
+	 */
+	private void collectStableMessages() {
+		if (repair != null) {
+			repair.collect(domains);
+		}
+		if (delivered == null) {
+			return;
+		}
+		final Iterator<ChatMessage> iterator = delivered.iterator();
 		while (iterator.hasNext()) {
 			final ChatMessage message = iterator.next();
-			boolean canDeliver = canDeliverMessage(message);
-			if (canDeliver) {
+			if (domain(message.topic()).isStable(message)) {
 				iterator.remove();
-				return Optional.of(message);
+				discarded++;
+			}
+		}
+	}
+
+	/**
+	 * Announce the messages I sent once I stop sending, and request the missing messages (reliable multicast).
+	 */
+	private void repairTick() {
+		if (repair.announce()) {
+			final HeartbeatMessage heartbeat = new HeartbeatMessage(this.id, sent());
+			members.forEach((member, actor) -> {
+				if (member != this.id) {
+					send(member, actor, heartbeat);
+				}
+			});
+			repair.heartbeats(members.size() - 1);
+		}
+
+		// a member that left does not deliver messages anymore
+		if (!left) {
+			repair.repair(domains, (domain, member, from, to) -> {
+				final ActorRef actor = known.get(member);
+				if (actor != null) {
+					send(member, actor, new NackMessage(this.id, domain, from, to));
+				}
+			});
+		}
+	}
+
+	/**
+	 * Handle the request of another member for some of my messages it never received: send them again if still stored.
+	 *
+	 * @param nack NackMessage.
+	 */
+	private void handleNackMessage(NackMessage nack) {
+		for (int seq = nack.from(); seq <= nack.to(); seq++) {
+			final ChatMessage message = repair.lookup(nack.domain(), seq);
+			if (message != null) {
+				send(nack.requester(), getSender(), message);
 			}
 		}
+	}
 
-		// no message to deliver
-		return Optional.empty();
+	/**
+	 * Handle the heartbeat of another member: its messages up to the announced ones are expected.
+	 *
+	 * @param message HeartbeatMessage.
+	 */
+	private void handleHeartbeatMessage(HeartbeatMessage message) {
+		message.sent().forEach((key, sent) -> {
+			domainByKey(key);
+			repair.announced(key, message.id(), sent);
+		});
 	}
 
 	/**
-	 * Check if a message is ready to be delivered.
+	 * Handle a new ChatMessage.
+	 * Queue the message and deliver all the deliverable ones.
 	 *
-	 * @param message ChatMessage
-	 * @return True if safe to deliver, false otherwise.
+	 * @param newMessage Message to handle.
 	 */
-	private boolean canDeliverMessage(ChatMessage message) {
+	private void handleChatMessage(ChatMessage newMessage) {
 
-		// extract the sender of the message
-		final int sender = message.sender();
+		// a member that left does not deliver messages anymore
+		if (left) {
+			return;
+		}
 
-		// Vj[j] = Vk[j]+1
-		boolean condition1 = message.vc()[sender] == this.vc[sender] + 1;
+		// log the message (not while recovering it from the log)
+		if (durable != null && !recovering) {
+			durable.received(newMessage);
+			logged();
+		}
+		if (trace != null) {
+			trace.receive(newMessage);
+		}
 
-		// Vj[i] ≤ Vk[i] for all i not equal to j
-		boolean condition2 = true;
-		for (int i = 0; i < this.vc.length; i++) {
-			if (i != message.sender()) {
-				condition2 = condition2 && message.vc()[i] <= this.vc[i];
+		// add the message to the buffer of its domain (a copy already received, or of a member that left, is ignored)
+		final CausalDomain domain = domain(newMessage.topic());
+		if (!domain.add(newMessage)) {
+			if (repair != null) {
+				repair.ignored();
 			}
+			return;
+		}
+		if (repair != null) {
+			repair.received(topicScope ? newMessage.topic() : GROUP, newMessage);
 		}
 
-		// both conditions must be true
-		return condition1 && condition2;
+		// check if I have a message to deliver
+		deliverAll(domain);
+	}
+
+	/**
+	 * Handle a new CompactChatMessage: decode it and handle the full messages.
+	 *
+	 * @param message Message to handle.
+	 */
+	private void handleCompactChatMessage(CompactChatMessage message) {
+		domain(message.topic()).decode(message, this::handleChatMessage);
+	}
+
+	/**
+	 * Handle a ChatMessage disseminated along a tree: forward it to my subtree, then handle it.
+	 * A member that left the group still forwards the message, but does not deliver it.
+	 *
+	 * @param message RelayMessage.
+	 */
+	private void handleRelayMessage(RelayMessage message) {
+		relay(message.message(), message.targets(), message.from(), message.to());
+		handleChatMessage(message.message());
+	}
+
+	/**
+	 * Handle a message of a member of my entry (plausible clocks): give it its turn, in the order in which they were sent.
+	 *
+	 * @param request OrderRequestMessage.
+	 */
+	private void handleOrderRequestMessage(OrderRequestMessage request) {
+		final int sender = request.message().sender();
+		if (request.seq() != nextRequest.getOrDefault(sender, 0)) {
+			earlyRequests.computeIfAbsent(sender, s -> new HashMap<>()).put(request.seq(), request);
+			return;
+		}
+		OrderRequestMessage next = request;
+		while (next != null) {
+			nextRequest.put(sender, next.seq() + 1);
+			sequence(domain(next.message().topic()), next.message());
+			final Map<Integer, OrderRequestMessage> early = earlyRequests.get(sender);
+			next = early != null ? early.remove(next.seq() + 1) : null;
+		}
+	}
+
+	/**
+	 * Give a message of my entry its turn, send it to everybody and deliver it (plausible clocks).
+	 *
+	 * @param domain  Causal domain of the message.
+	 * @param message ChatMessage stamped by its sender.
+	 */
+	private void sequence(CausalDomain domain, ChatMessage message) {
+		final ChatMessage turn = domain.sequence(message);
+		multicast(domain, turn);
+		handleChatMessage(turn);
+	}
+
+	/**
+	 * Handle the messages of a BatchMessage, in the order in which they were sent.
+	 *
+	 * @param batch BatchMessage.
+	 */
+	private void handleBatchMessage(BatchMessage batch) {
+		for (Object message : batch.messages()) {
+			if (message instanceof ChatMessage) {
+				handleChatMessage((ChatMessage) message);
+			} else if (message instanceof CompactChatMessage && compact) {
+				handleCompactChatMessage((CompactChatMessage) message);
+			} else if (message instanceof RelayMessage) {
+				handleRelayMessage((RelayMessage) message);
+			} else {
+				unhandled(message);
+			}
+		}
+	}
+
+	/**
+	 * Deliver all the deliverable messages in the buffer of a domain.
+	 *
+	 * @param domain Causal domain.
+	 */
+	private void deliverAll(CausalDomain domain) {
+		ChatMessage toDeliver;
+		while ((toDeliver = nextMessage(domain)) != null) {
+			deliverChatMessage(domain, toDeliver);
+		}
 	}
 
+	/**
+	 * Extract the next message ready to be delivered.
+	 * Only the messages unblocked by the previous deliveries are checked.
+	 *
+	 * @param domain Causal domain.
+	 * @return Next message to deliver, null if none.
+	 */
+	private ChatMessage nextMessage(CausalDomain domain) {
+		return domain.poll();
+	}
 
 	/**
 	 * Simulate the message delivery to the application (printing it to the console).
 	 *
+	 * @param domain  Causal domain of the message.
 	 * @param message Message to deliver.
 	 */
-	private void deliverChatMessage(ChatMessage message) {
+	private void deliverChatMessage(CausalDomain domain, ChatMessage message) {
 
 		// update vc -> merge
-		// NB: no update my counter!
-		for (int i = 0; i < actors.size(); i++) {
-			if (i != this.id) {
-				this.vc[i] = Math.max(this.vc[i], message.vc()[i]);
-			}
-		}
+		domain.merge(message);
 
-		// deliver the message -> store it in a queue
-		this.delivered.add(message);
+		// deliver the message -> check the order & store it in a queue
+		verifier.delivered(message);
+		if (delivered != null) {
+			delivered.add(message);
+		}
 
-		// do next elaboration
-		onChatMessage(message);
+		// do next elaboration (already done before the restart if recovering)
+		if (!recovering) {
+			onChatMessage(message);
+		}
 	}
 
 	/**
@@ -201,28 +890,553 @@ public abstract class VectorClockActor extends UntypedActor {
 	 * @param replies Current number of replies of the ChatMessage.
 	 */
 	protected final void sendChatMessage(String topic, int replies) {
+		if (!started || left) {
+			throw new IllegalStateException("Actor " + id + " is not a member of the group");
+		}
 
-		// update my vector clock
-		this.vc[this.id]++;
+		// update my vector clock & create the message
+		final CausalDomain domain = domain(topic);
+		final ChatMessage message = domain.stamp(topic, replies + 1);
 
-		// message
-		final ChatMessage message = new ChatMessage(topic, replies + 1, this.id, this.vc);
+		// total order -> everybody delivers the message in its turn, also me
+		if (totalOrder != null) {
+			totalOrder.broadcast(message);
+			return;
+		}
+
+		// plausible clocks -> the first member of my entry gives the message its turn, then I deliver it like the others
+		if (plausibleEntries > 0) {
+			final int leader = entryLeaders[DeliveryBuffer.entry(this.id, plausibleEntries)];
+			if (leader == this.id) {
+				sequence(domain, message);
+			} else {
+				send(leader, members.get(leader), new OrderRequestMessage(requestsSent++, message));
+			}
+			return;
+		}
+
+		// log the message before sending it
+		if (durable != null) {
+			durable.sent(message);
+			logged();
+		}
+		if (trace != null) {
+			trace.stamp(message);
+		}
+
+		// keep the message to send it again if lost
+		if (repair != null) {
+			repair.stored(topicScope ? topic : GROUP, message, members.size() - 1);
+		}
 
 		// do not send message to myself... deliver it now
-		delivered.add(message);
+		verifier.delivered(message);
+		if (delivered != null) {
+			delivered.add(message);
+		}
 
 		// send message in multicast
-		actors.stream()
-			.unordered()
-			.filter(actor -> actor != getSelf())
-			.forEach(actor -> {
-				try {
-					Thread.sleep(random.nextInt(20));
-				} catch (InterruptedException e) {
-					throw new RuntimeException(e);
+		multicast(domain, message);
+	}
+
+	/**
+	 * Send a message to all the other members, directly or along my tree.
+	 *
+	 * @param domain  Causal domain of the message.
+	 * @param message ChatMessage.
+	 */
+	private void multicast(CausalDomain domain, ChatMessage message) {
+
+		// trace a send to each member, whatever the dissemination
+		if (trace != null) {
+			for (int member : members.keySet()) {
+				if (member != this.id) {
+					trace.send(member, message);
 				}
+			}
+		}
+
+		// send message along my tree (the full message: the compact one depends on the receiver)
+		if (relayFanout > 0) {
+			final int[] targets = relayTargets();
+			relay(message, targets, 0, targets.length);
+			return;
+		}
+
+		// send message to every other member
+		members.forEach((member, actor) -> {
+			if (member != this.id) {
+				if (batchWindow != null) {
+					enqueue(member, domain.encode(message, member));
+				} else {
+					send(member, actor, domain.encode(message, member));
+				}
+			}
+		});
+	}
+
+	/**
+	 * Send a message to the members in the range [from, to) of the targets of a tree:
+	 * the range is split in (at most) fanout contiguous parts of the same size,
+	 * and the first member of each part is asked to forward the message to the rest of its part.
+	 *
+	 * @param message ChatMessage to disseminate.
+	 * @param targets IDs of the members reached by the tree.
+	 * @param from    First index of the range (inclusive).
+	 * @param to      Last index of the range (exclusive).
+	 */
+	private void relay(ChatMessage message, int[] targets, int from, int to) {
+		final int size = to - from;
+		final int parts = Math.min(relayFanout, size);
+		int start = from;
+		for (int part = 1; part <= parts; part++) {
+			final int end = from + (int) ((long) size * part / parts);
+			forward(targets[start], new RelayMessage(message, targets, start + 1, end));
+			start = end;
+		}
+	}
+
+	/**
+	 * Send a RelayMessage to an actor, even if it left the group (it has to forward it).
+	 * If the actor is not known yet (it is joining the group), the message is sent when its JoinMessage arrives.
+	 *
+	 * @param receiver ID of the receiver actor.
+	 * @param message  RelayMessage.
+	 */
+	private void forward(int receiver, RelayMessage message) {
+		final ActorRef actor = known.get(receiver);
+		if (actor == null) {
+			pendingRelays.computeIfAbsent(receiver, r -> new ArrayList<>()).add(message);
+		} else if (batchWindow != null) {
+			enqueue(receiver, message);
+		} else {
+			send(receiver, actor, message);
+		}
+	}
+
+	/**
+	 * Return the IDs of the other members, starting from the one after mine (the trees of different senders differ).
+	 * The array is shared by the RelayMessages, so it is replaced (not modified) when the group changes.
+	 *
+	 * @return IDs of the members reached by my trees.
+	 */
+	private int[] relayTargets() {
+		if (relayTargets == null) {
+			relayTargets = members.keySet().stream()
+				.filter(member -> member != this.id)
+				.sorted(Comparator.comparingInt(member -> member > this.id ? member - Integer.MAX_VALUE : member))
+				.mapToInt(Integer::intValue)
+				.toArray();
+		}
+		return relayTargets;
+	}
+
+	/**
+	 * Collect a message for a destination: the batch is sent when full or at the end of the window.
+	 *
+	 * @param receiver ID of the receiver actor.
+	 * @param message  Message to send.
+	 */
+	private void enqueue(int receiver, Object message) {
+		final List<Object> batch = outbox.computeIfAbsent(receiver, r -> new ArrayList<>(batchSize));
+		batch.add(message);
+		if (batch.size() >= batchSize) {
+			flush(receiver);
+		} else if (!flushScheduled) {
+			flushScheduled = true;
+			getContext().system().scheduler().scheduleOnce(
+				batchWindow,
+				getSelf(),
+				Tick.FLUSH,
+				getContext().dispatcher(),
+				getSelf()
+			);
+		}
+	}
+
+	/**
+	 * Send the collected messages to all the destinations.
+	 */
+	private void flushAll() {
+		new ArrayList<>(outbox.keySet()).forEach(this::flush);
+	}
+
+	/**
+	 * Send the collected messages to a destination, as a single BatchMessage.
+	 * The messages for a member that left the group in the meantime are sent anyway:
+	 * it does not deliver them, but it still forwards the RelayMessages.
+	 *
+	 * @param receiver ID of the receiver actor.
+	 */
+	private void flush(int receiver) {
+		final List<Object> batch = outbox.remove(receiver);
+		final ActorRef actor = known.get(receiver);
+		if (batch != null && actor != null) {
+			send(receiver, actor, batch.size() == 1 ? batch.get(0) : new BatchMessage(batch));
+		}
+	}
+
+	/**
+	 * Send a message to another actor through the simulated network.
+	 * The message is scheduled after the delay given by the delay model, so this actor never blocks.
+	 *
+	 * @param receiver ID of the receiver actor.
+	 * @param actor    The receiver actor.
+	 * @param message  Message to send.
+	 */
+	private void send(int receiver, ActorRef actor, Object message) {
+
+		// persistence -> hold the message until the records before it are on disk
+		if (durable != null && durable.isDirty()) {
+			held.add(new Held(receiver, actor, message));
+			return;
+		}
+		transmit(receiver, actor, message);
+	}
+
+	/**
+	 * Send a message to an actor now, with the delay of the network.
+	 *
+	 * @param receiver ID of the receiver.
+	 * @param actor    Receiver.
+	 * @param message  Message.
+	 */
+	private void transmit(int receiver, ActorRef actor, Object message) {
+		// faulty network -> the message may be lost or delivered twice
+		final int copies = faults != null && isLossy(message) ? faults.copies() : 1;
+		for (int copy = 0; copy < copies; copy++) {
+			if (isBasic(message)) {
+				basicSent++;
+			}
+			final long delay = delayModel.delay(this.id, receiver);
+			if (delay <= 0) {
 				actor.tell(message, getSelf());
+			} else {
+				getContext().system().scheduler().scheduleOnce(
+					Duration.create(delay, TimeUnit.MILLISECONDS),
+					actor,
+					message,
+					getContext().dispatcher(),
+					getSelf()
+				);
+			}
+		}
+	}
+
+	/**
+	 * Handle the ProbeMessage of the termination detector: reply with my counters and whether I have work pending.
+	 *
+	 * @param message ProbeMessage.
+	 */
+	private void handleProbeMessage(ProbeMessage message) {
+		final boolean passive = outbox.isEmpty() && held.isEmpty() && awaitingWelcome.isEmpty()
+			&& (repair == null || left || !repair.isUnannounced() && !repair.hasMissing(domains));
+		getSender().tell(new ProbeReplyMessage(message.wave(), basicSent, basicReceived, passive), getSelf());
+	}
+
+	/**
+	 * Check if a message is a basic one for the termination detection:
+	 * it carries ChatMessages or it drives their delivery (the digests only free memory).
+	 *
+	 * @param message Message.
+	 * @return True if basic.
+	 */
+	private static boolean isBasic(Object message) {
+		return message instanceof ChatMessage
+			|| message instanceof CompactChatMessage
+			|| message instanceof RelayMessage
+			|| message instanceof BatchMessage
+			|| message instanceof OrderRequestMessage
+			|| message instanceof TotalOrderMessage
+			|| message instanceof AckMessage
+			|| message instanceof NackMessage
+			|| message instanceof HeartbeatMessage;
+	}
+
+	/**
+	 * Check if a message may be lost or duplicated by a faulty network: the ones that carry ChatMessages and the NACKs.
+	 * The other messages (membership, digests, heartbeats, probes) are always delivered once.
+	 *
+	 * @param message Message.
+	 * @return True if subject to the faults.
+	 */
+	private static boolean isLossy(Object message) {
+		return message instanceof ChatMessage
+			|| message instanceof CompactChatMessage
+			|| message instanceof RelayMessage
+			|| message instanceof BatchMessage
+			|| message instanceof NackMessage;
+	}
+
+	private void start() {
+		started = true;
+		if (plausibleEntries > 0) {
+			entryLeaders = new int[plausibleEntries];
+			Arrays.fill(entryLeaders, Integer.MAX_VALUE);
+			members.keySet().forEach(member -> {
+				final int entry = DeliveryBuffer.entry(member, plausibleEntries);
+				entryLeaders[entry] = Math.min(entryLeaders[entry], member);
 			});
+		}
+		if (trace != null) {
+			trace.group(members.keySet());
+		}
+		if (!CAUSAL.equals(ordering)) {
+			totalOrder = TotalOrder.create(
+				ordering,
+				id,
+				members.keySet(),
+				(receiver, message) -> send(receiver, members.get(receiver), message),
+				message -> deliverChatMessage(domain(message.topic()), message)
+			);
+		}
+		unstashAll();
+		if (digestInterval != null) {
+			digestTimer = getContext().system().scheduler().schedule(
+				digestInterval,
+				digestInterval,
+				getSelf(),
+				Tick.DIGEST,
+				getContext().dispatcher(),
+				getSelf()
+			);
+		}
+		if (recorder != null) {
+			startMetrics();
+		}
+		if (repair != null) {
+			repairTimer = getContext().system().scheduler().schedule(
+				repairInterval,
+				repairInterval,
+				getSelf(),
+				Tick.REPAIR,
+				getContext().dispatcher(),
+				getSelf()
+			);
+		}
+		if (durable != null) {
+			checkpointTimer = getContext().system().scheduler().schedule(
+				checkpointInterval,
+				checkpointInterval,
+				getSelf(),
+				Tick.CHECKPOINT,
+				getContext().dispatcher(),
+				getSelf()
+			);
+		}
+		if (!recovering) {
+			onStart();
+		}
+	}
+
+	/**
+	 * Register the MXBean of the metrics and take a snapshot periodically.
+	 */
+	private void startMetrics() {
+		if (metricsJmx) {
+			try {
+				metricsBean = new DeliveryStatsBean(getContext().system().name(), getSelf().path().name(), metricsSnapshot());
+			} catch (JMException e) {
+				Output.print(Output.Level.INFO, "Actor " + id + " -> cannot register the metrics in JMX: " + e);
+			}
+		}
+		metricsTimer = getContext().system().scheduler().schedule(
+			metricsInterval,
+			metricsInterval,
+			getSelf(),
+			Tick.METRICS,
+			getContext().dispatcher(),
+			getSelf()
+		);
+	}
+
+	/**
+	 * Take a snapshot of the metrics, expose it through JMX and print it if asked to.
+	 */
+	private void publishMetrics() {
+		final DeliveryStats stats = metricsSnapshot();
+		if (metricsBean != null) {
+			metricsBean.update(stats);
+		}
+		if (metricsDump) {
+			Output.print(Output.Level.INFO, "Actor " + id + " -> METRICS: " + stats);
+		}
+	}
+
+	private DeliveryStats metricsSnapshot() {
+		int depth = 0;
+		for (CausalDomain domain : domains.values()) {
+			depth += domain.size();
+		}
+		return recorder.snapshot(depth);
+	}
+
+	private void addMember(int member, ActorRef actor) {
+		members.put(member, actor);
+		known.put(member, actor);
+		relayTargets = null;
+		domains.values().forEach(domain -> domain.addMember(member));
+
+		// forward the messages that were waiting for this actor
+		final List<RelayMessage> pending = pendingRelays.remove(member);
+		if (pending != null) {
+			pending.forEach(message -> forward(member, message));
+		}
+	}
+
+	/**
+	 * Return the causal domain of a topic.
+	 *
+	 * @param topic Topic of a message.
+	 * @return Causal domain of the topic, or the one of the whole group.
+	 */
+	private CausalDomain domain(String topic) {
+		return domainByKey(topicScope ? topic : GROUP);
+	}
+
+	/**
+	 * Return the causal domain with the given key, creating it if needed.
+	 * A new domain tracks all the members, and the ones that left until all their messages are delivered.
+	 *
+	 * @param key Key of the domain.
+	 * @return Causal domain.
+	 */
+	private CausalDomain domainByKey(String key) {
+		CausalDomain domain = domains.get(key);
+		if (domain == null) {
+			final CausalDomain created = new CausalDomain(this.id, compact, digestInterval != null, plausibleEntries, recorder);
+			members.keySet().forEach(created::addMember);
+			departed.forEach((member, sent) -> {
+				if (sent.getOrDefault(key, 0) > 0) {
+					created.addMember(member);
+					created.removeMember(member, sent.get(key));
+				}
+			});
+			domains.put(key, created);
+			domain = created;
+		}
+		return domain;
+	}
+
+	/**
+	 * Return the number of messages sent by this actor, by causal domain.
+	 *
+	 * @return Number of sent messages.
+	 */
+	private Map<String, Integer> sent() {
+		final Map<String, Integer> sent = new HashMap<>();
+		domains.forEach((key, domain) -> sent.put(key, domain.sent()));
+		return sent;
+	}
+
+	/**
+	 * Check if the group is static: the members cannot join or leave it.
+	 *
+	 * @return True with total order, plausible clocks, persistence or trace.
+	 */
+	private boolean isStatic() {
+		return !isDynamicGroup(getContext().system().settings().config());
+	}
+
+	/**
+	 * Check if the members can join or leave the group with the given configuration.
+	 *
+	 * @param config Configuration of the actor system.
+	 * @return True with causal order, exact vector clocks, no persistence and no trace.
+	 */
+	public static boolean isDynamicGroup(Config config) {
+		return CAUSAL.equals(config.getString("lab3.ordering"))
+			&& config.getInt("lab3.vector-clock.plausible.entries") == 0
+			&& !config.getBoolean("lab3.persistence.enabled")
+			&& !config.getBoolean("lab3.trace.enabled");
+	}
+
+	/**
+	 * Rebuild the state of the actor from the last checkpoint and the log after it:
+	 * the messages are delivered again without notifying the subclass (it already handled them),
+	 * then the actor starts without calling onStart and sends again its messages logged after the checkpoint.
+	 */
+	private void recover() {
+		final DurableLog.Recovered recovered = durable.recover();
+		if (recovered.group == null) {
+			return;
+		}
+		recovering = true;
+		recovered.group.forEach(this::addMember);
+		recovered.clocks.forEach((key, vc) -> {
+			domainByKey(key).restore(vc);
+			verifier.restored(key, vc);
+		});
+		if (delivered != null) {
+			delivered.addAll(recovered.delivered);
+		}
+		final List<ChatMessage> resend = new ArrayList<>();
+		for (ChatMessage message : recovered.messages) {
+			if (message.sender() == this.id) {
+				domain(message.topic()).restoreSent(message.vc().get(this.id));
+				verifier.delivered(message);
+				if (delivered != null) {
+					delivered.add(message);
+				}
+				resend.add(message);
+			} else {
+				handleChatMessage(message);
+			}
+		}
+		start();
+		resend.forEach(message -> multicast(domain(message.topic()), message));
+		recovering = false;
+		Output.print(Output.Level.INFO, "Actor " + id + " -> recovered " + recovered.messages.size() + " messages, sent again " + resend.size());
+	}
+
+	/**
+	 * Sync the log after a new record if enough records are waiting, otherwise within the sync interval.
+	 */
+	private void logged() {
+		if (durable.isFull()) {
+			syncLog();
+		} else if (!syncScheduled) {
+			syncScheduled = true;
+			getContext().system().scheduler().scheduleOnce(
+				syncInterval,
+				getSelf(),
+				Tick.SYNC,
+				getContext().dispatcher(),
+				getSelf()
+			);
+		}
+	}
+
+	/**
+	 * Force the log to disk and send the messages held meanwhile, in order.
+	 */
+	private void syncLog() {
+		durable.sync();
+		while (!held.isEmpty()) {
+			final Held message = held.poll();
+			transmit(message.receiver, message.actor, message.message);
+		}
+	}
+
+	/**
+	 * Return a snapshot of the metrics of the delivery.
+	 *
+	 * @return Snapshot of the metrics, null if "lab3.metrics.enabled" is off.
+	 */
+	protected final DeliveryStats deliveryStats() {
+		return recorder != null ? metricsSnapshot() : null;
+	}
+
+	/**
+	 * Return a snapshot of the faults injected into my messages and of the work of the reliable multicast.
+	 *
+	 * @return Snapshot of the statistics, null if the network is reliable and "lab3.reliability.enabled" is off.
+	 */
+	protected final RepairStats repairStats() {
+		if (repair != null) {
+			return repair.stats(faults);
+		}
+		return faults != null ? new RepairStats(0, 0, faults.dropped(), faults.duplicated(), 0, 0, 0, 0, 0, new Histogram()) : null;
 	}
 
 	/**
@@ -234,6 +1448,11 @@ public abstract class VectorClockActor extends UntypedActor {
 		return id;
 	}
 
+	/**
+	 * This actor knows the group and can start sending ChatMessages.
+	 */
+	protected abstract void onStart();
+
 	/**
 	 * A new ChatMessage is ready to be delivered.
 	 *
@@ -247,4 +1466,27 @@ public abstract class VectorClockActor extends UntypedActor {
 	 * @param message StopMessage
 	 */
 	protected abstract void onStopMessage(StopMessage message);
+
+	/**
+	 * A message not used by the protocol has just arrived (after the start of the actor).
+	 *
+	 * @param message Message.
+	 */
+	protected void onMessage(Object message) {
+		unhandled(message);
+	}
+
+	// message held until the log is synced
+	private static final class Held {
+
+		private final int receiver;
+		private final ActorRef actor;
+		private final Object message;
+
+		private Held(int receiver, ActorRef actor, Object message) {
+			this.receiver = receiver;
+			this.actor = actor;
+			this.message = message;
+		}
+	}
 }